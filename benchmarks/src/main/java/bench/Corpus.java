@@ -0,0 +1,73 @@
+package bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// The checked-in benchmark corpus (src/main/resources/corpus): real-world pages along with the URL each
+// was published at, and the links found on them
+public final class Corpus {
+    // Topics that occur on every page, so sentence matching has real work to do
+    public static final List<String> TOPICS = Arrays.asList("function", "error", "encoding");
+
+    // A seed on the host most of the corpus links point to
+    public static final String SEED = "https://nodejs.org/docs/latest-v20.x/api/index.html";
+
+    public static class Page {
+        public final String name;
+        public final String url;
+        public final byte[] body;
+
+        Page(String name, String url, byte[] body) {
+            this.name = name;
+            this.url = url;
+            this.body = body;
+        }
+    }
+
+    private Corpus() {
+    }
+
+    public static List<Page> pages() {
+        List<Page> pages = new ArrayList<>();
+        for (String line : lines("pages.txt")) {
+            String[] parts = line.split("\\s+");
+            pages.add(new Page(parts[0], parts[1], read(parts[0])));
+        }
+        return pages;
+    }
+
+    public static Page page(String name) {
+        for (Page p : pages()) {
+            if (p.name.equals(name)) return p;
+        }
+        throw new IllegalArgumentException("No corpus page " + name);
+    }
+
+    // Links in the order a crawler would find them, repeats included
+    public static String[] urls() {
+        return lines("urls.txt").toArray(new String[0]);
+    }
+
+    private static List<String> lines(String resource) {
+        List<String> lines = new ArrayList<>();
+        for (String line : new String(read(resource), StandardCharsets.UTF_8).split("\n")) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) lines.add(line);
+        }
+        return lines;
+    }
+
+    private static byte[] read(String resource) {
+        try (InputStream in = Corpus.class.getResourceAsStream("/corpus/" + resource)) {
+            if (in == null) throw new IllegalStateException("Missing corpus file " + resource);
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
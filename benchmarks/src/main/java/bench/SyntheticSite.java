@@ -0,0 +1,214 @@
+package bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A generated web site served from 127.0.0.1, for crawling without a network. The pages form a tree:
+// page 0 is the root, page i links to its fanout children (ids i * fanout + 1 and up) and to a few random
+// other pages, as real sites link back and across. Page text is made of paragraphs from a shared pool,
+// picked per page, so pages differ from each other and some sentences mention the topic. Every response
+// can be delayed, a fixed share of the pages answer with an error status, and a server with a capacity
+// turns requests beyond it away with 503 and Retry-After, as an overloaded server does.
+public class SyntheticSite implements Closeable {
+    public static class Options {
+        public int fanout = 8;
+        public int depth = 3;
+        public int pageBytes = 20_000;  // text per page, roughly
+        public int crossLinks = 2;      // links to random pages, on top of the children
+        public int latencyMillis = 0;   // added to every response
+        public int jitterMillis = 0;    // plus up to this much more, at random
+        public double errorRate = 0;    // share of pages (never the root) that answer 500, 503 or 404
+        public int capacity = 0;        // requests handled at once before the rest get a 503; 0 for no limit
+        public int retryAfterSeconds = 1;
+        public String topic = "crawler";
+        public long seed = 1;
+    }
+
+    private static final int PARAGRAPHS = 256;
+    private static final String[] WORDS = {"the", "a", "of", "and", "to", "in", "page", "site", "index", "link",
+            "search", "result", "network", "server", "request", "response", "document", "text", "graph", "node",
+            "queue", "thread", "cache", "memory", "latency", "host", "fetch", "parse", "score", "topic", "data",
+            "model", "system", "value", "time", "first", "new", "large", "small", "fast", "slow", "many", "each"};
+    private static final int[] ERROR_STATUSES = {500, 503, 404};
+
+    private final Options options;
+    private final int pageCount;
+    private final String[] paragraphs = new String[PARAGRAPHS];
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger turnedAway = new AtomicInteger();
+
+    private SyntheticSite(Options options) throws IOException {
+        this.options = options;
+        long count = 0;
+        long level = 1;
+        for (int d = 0; d <= options.depth; d++) {
+            count += level;
+            level *= Math.max(1, options.fanout);
+        }
+        if (count > Integer.MAX_VALUE / 2) throw new IllegalArgumentException("Site too large: " + count + " pages");
+        this.pageCount = (int) count;
+
+        Random random = new Random(options.seed);
+        for (int p = 0; p < PARAGRAPHS; p++) this.paragraphs[p] = paragraph(random);
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/", this::handle);
+        // enough threads that injected latency overlaps instead of queueing
+        this.handlers = Executors.newFixedThreadPool(64, r -> {
+            Thread t = new Thread(r, "synthetic-site");
+            t.setDaemon(true);
+            return t;
+        });
+        this.server.setExecutor(this.handlers);
+    }
+
+    public static SyntheticSite start(Options options) throws IOException {
+        SyntheticSite site = new SyntheticSite(options);
+        site.server.start();
+        return site;
+    }
+
+    public String rootUrl() {
+        return "http://127.0.0.1:" + this.server.getAddress().getPort() + "/";
+    }
+
+    public int pageCount() {
+        return this.pageCount;
+    }
+
+    // Pages that answer with an error status
+    public int errorPageCount() {
+        int errors = 0;
+        for (int id = 0; id < this.pageCount; id++) {
+            if (status(id) != 200) errors++;
+        }
+        return errors;
+    }
+
+    // Requests answered 503 because the server was over capacity
+    public int turnedAwayCount() {
+        return this.turnedAway.get();
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.handlers.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (this.options.capacity > 0 && this.inFlight.incrementAndGet() > this.options.capacity) {
+                this.turnedAway.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(this.options.retryAfterSeconds));
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            serve(exchange);
+        } finally {
+            if (this.options.capacity > 0) this.inFlight.decrementAndGet();
+        }
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try {
+            if (this.options.latencyMillis > 0 || this.options.jitterMillis > 0) {
+                int jitter = this.options.jitterMillis > 0 ? ThreadLocalRandom.current().nextInt(this.options.jitterMillis + 1) : 0;
+                Thread.sleep(this.options.latencyMillis + jitter);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        int id = pageId(exchange.getRequestURI().getPath());
+        int status = id < 0 ? 404 : status(id);
+        byte[] body = (status == 200 ? page(id) : "<html><body>Error " + status + "</body></html>")
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        boolean head = exchange.getRequestMethod().equals("HEAD");
+        exchange.sendResponseHeaders(status, head ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (!head) out.write(body);
+        }
+    }
+
+    // "/" is page 0, "/p/<id>.html" page id; -1 for anything else
+    private int pageId(String path) {
+        if (path.equals("/")) return 0;
+        if (!path.startsWith("/p/") || !path.endsWith(".html")) return -1;
+        try {
+            int id = Integer.parseInt(path.substring(3, path.length() - 5));
+            return id >= 0 && id < this.pageCount ? id : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private int status(int id) {
+        if (id == 0 || this.options.errorRate <= 0) return 200;
+        long h = mix(id * 0x9E3779B97F4A7C15L + this.options.seed);
+        if ((h >>> 11) * 0x1.0p-53 >= this.options.errorRate) return 200;
+        return ERROR_STATUSES[(int) ((h & 0x7fffffff) % ERROR_STATUSES.length)];
+    }
+
+    private String page(int id) {
+        Random random = new Random(mix(id + this.options.seed));
+        StringBuilder sb = new StringBuilder(this.options.pageBytes + 1024);
+        sb.append("<!DOCTYPE html>\n<html><head><title>Page ").append(id).append("</title></head><body>\n");
+        sb.append("<h1>Page ").append(id).append("</h1>\n<ul>\n");
+
+        long firstChild = (long) id * this.options.fanout + 1;
+        for (int c = 0; c < this.options.fanout && firstChild + c < this.pageCount; c++) link(sb, (int) (firstChild + c));
+        for (int c = 0; c < this.options.crossLinks; c++) link(sb, random.nextInt(this.pageCount));
+        sb.append("</ul>\n");
+
+        int start = sb.length();
+        while (sb.length() - start < this.options.pageBytes) {
+            sb.append("<p>").append(this.paragraphs[random.nextInt(PARAGRAPHS)]).append("</p>\n");
+        }
+        return sb.append("</body></html>\n").toString();
+    }
+
+    private void link(StringBuilder sb, int target) {
+        sb.append("<li><a href=\"").append(target == 0 ? "/" : "/p/" + target + ".html").append("\">Page ")
+                .append(target).append("</a></li>\n");
+    }
+
+    private String paragraph(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int sentences = 3 + random.nextInt(5);
+        for (int s = 0; s < sentences; s++) {
+            int words = 6 + random.nextInt(12);
+            for (int w = 0; w < words; w++) {
+                String word = random.nextInt(40) == 0 ? this.options.topic : WORDS[random.nextInt(WORDS.length)];
+                if (w == 0) word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+                sb.append(word).append(w == words - 1 ? ". " : " ");
+            }
+        }
+        return sb.toString().trim();
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
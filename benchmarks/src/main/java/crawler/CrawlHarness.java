@@ -0,0 +1,208 @@
+package crawler;
+
+import bench.SyntheticSite;
+import model.CrawlConfig;
+import model.ExtractionMode;
+import model.FetchEngine;
+import model.LinkRecord;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Offline end-to-end crawl measurement: serves a generated site from 127.0.0.1 (SyntheticSite), crawls
+// all of it with CrawlManager.startCrawl() and reports pages per second, fetch latency percentiles, the
+// per-stage latencies from CrawlMetrics and peak heap. Nothing leaves the machine, so runs are repeatable
+// and can gate CI.
+//
+//   java -cp benchmarks/target/benchmarks.jar crawler.CrawlHarness [options]
+//
+//   --fanout N            links from each page to its children (8)
+//   --depth N             levels below the root (3)
+//   --page-bytes N        text per page (20000)
+//   --cross-links N       extra links from each page to random pages (2)
+//   --latency-ms N        delay added to every response (0)
+//   --jitter-ms N         up to this much more delay, at random (0)
+//   --error-rate X        share of pages answering 500/503/404 (0)
+//   --capacity N          requests the site serves at once; more get 503 + Retry-After (0, no limit)
+//   --engine E            BLOCKING or ASYNC (BLOCKING)
+//   --extraction M        DOM or STREAMING (DOM)
+//   --concurrency N       CrawlConfig maxConcurrency (10)
+//   --per-host N          CrawlConfig maxConcurrencyPerHost (10)
+//   --parse-threads N     CrawlConfig parseThreads (0, one per core)
+//   --adaptive B          CrawlConfig adaptiveHostLimits (true)
+//   --min-pages-per-sec X exit with status 1 when the crawl is slower than this
+public class CrawlHarness {
+    private static final String USAGE = "Usage: CrawlHarness [--fanout N] [--depth N] [--page-bytes N] [--cross-links N] "
+            + "[--latency-ms N] [--jitter-ms N] [--error-rate X] [--capacity N] [--engine BLOCKING|ASYNC] "
+            + "[--extraction DOM|STREAMING] [--concurrency N] [--per-host N] [--parse-threads N] [--adaptive B] "
+            + "[--min-pages-per-sec X]";
+
+    public static void main(String[] args) throws Exception {
+        SyntheticSite.Options site = new SyntheticSite.Options();
+        FetchEngine engine = FetchEngine.BLOCKING;
+        ExtractionMode extraction = ExtractionMode.DOM;
+        int concurrency = 10;
+        int perHost = 10;
+        int parseThreads = 0;
+        boolean adaptive = true;
+        double minPagesPerSec = 0;
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) throw new IllegalArgumentException("Missing value for " + args[i] + "\n" + USAGE);
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--fanout": site.fanout = Integer.parseInt(value); break;
+                case "--depth": site.depth = Integer.parseInt(value); break;
+                case "--page-bytes": site.pageBytes = Integer.parseInt(value); break;
+                case "--cross-links": site.crossLinks = Integer.parseInt(value); break;
+                case "--latency-ms": site.latencyMillis = Integer.parseInt(value); break;
+                case "--jitter-ms": site.jitterMillis = Integer.parseInt(value); break;
+                case "--error-rate": site.errorRate = Double.parseDouble(value); break;
+                case "--capacity": site.capacity = Integer.parseInt(value); break;
+                case "--engine": engine = FetchEngine.valueOf(value.toUpperCase()); break;
+                case "--extraction": extraction = ExtractionMode.valueOf(value.toUpperCase()); break;
+                case "--concurrency": concurrency = Integer.parseInt(value); break;
+                case "--per-host": perHost = Integer.parseInt(value); break;
+                case "--parse-threads": parseThreads = Integer.parseInt(value); break;
+                case "--adaptive": adaptive = Boolean.parseBoolean(value); break;
+                case "--min-pages-per-sec": minPagesPerSec = Double.parseDouble(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        try (SyntheticSite server = SyntheticSite.start(site)) {
+            CrawlConfig config = new CrawlConfig(server.rootUrl(), site.topic, site.depth, server.pageCount());
+            config.setFetchEngine(engine);
+            config.setExtractionMode(extraction);
+            config.setMaxConcurrency(concurrency);
+            config.setMaxConcurrencyPerHost(perHost);
+            config.setMaxLinksPerPage(site.fanout + site.crossLinks);
+            config.setParseThreads(parseThreads);
+            config.setAdaptiveHostLimits(adaptive);
+            config.setMetricsIntervalMillis(20); // often enough to catch the deepest stage queues
+
+            ExecutorService callbacks = null;
+            Fetcher fetcher;
+            if (engine == FetchEngine.ASYNC) {
+                callbacks = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+                fetcher = new AsyncFetcher(callbacks, config.getMaxBodyBytes());
+            } else {
+                fetcher = new BlockingFetcher(config.getMaxBodyBytes());
+            }
+            TimingFetcher timing = new TimingFetcher(fetcher);
+
+            AtomicLong matches = new AtomicLong();
+            AtomicLong errors = new AtomicLong();
+            CrawlManager manager = new CrawlManager(config, m -> matches.incrementAndGet(), n -> {}, timing);
+            manager.addLogSink((LinkRecord r) -> {
+                if (r.status < 200 || r.status >= 400) errors.incrementAndGet();
+            });
+            AtomicLong parsePeak = new AtomicLong();
+            AtomicLong admissionPeak = new AtomicLong();
+            manager.addMetricsListener(s -> {
+                parsePeak.accumulateAndGet(s.gauge(CrawlMetrics.PARSE_QUEUED), Math::max);
+                admissionPeak.accumulateAndGet(s.gauge(CrawlMetrics.ADMISSION_QUEUED), Math::max);
+            });
+
+            System.gc();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) pool.resetPeakUsage();
+            long start = System.nanoTime();
+            manager.startCrawl();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long peakHeap = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) peakHeap += pool.getPeakUsage().getUsed();
+            }
+            if (callbacks != null) callbacks.shutdown();
+
+            long pages = manager.getPagesLogged();
+            double pagesPerSec = pages / seconds;
+            long[] latencies = timing.latencies();
+            System.out.printf("site: %d pages (%d with errors), fanout %d, depth %d, %d bytes of text per page%n",
+                    server.pageCount(), server.errorPageCount(), site.fanout, site.depth, site.pageBytes);
+            System.out.printf("crawl: %s fetching, %s extraction, %d threads, %d per host%s%n",
+                    engine, extraction, concurrency, perHost, adaptive ? " (adaptive)" : "");
+            System.out.printf("pages: %d in %.2f s, %.1f pages/s (%d errors, %d matching sentences)%n",
+                    pages, seconds, pagesPerSec, errors.get(), matches.get());
+            System.out.printf("fetch latency: p50 %.1f ms, p99 %.1f ms, max %.1f ms over %d fetches%n",
+                    percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6,
+                    percentile(latencies, 1.0) / 1e6, latencies.length);
+            CrawlMetrics.Snapshot snapshot = manager.getMetrics().snapshot();
+            for (String stage : new String[]{CrawlMetrics.FETCH_HEADERS, CrawlMetrics.PARSE, CrawlMetrics.MATCH,
+                    CrawlMetrics.ADMISSION}) {
+                LatencyHistogram.Summary s = snapshot.latency(stage);
+                System.out.printf("%s: p50 %.3f ms, p99 %.3f ms, mean %.3f ms over %d%n",
+                        stage, s.p50Millis, s.p99Millis, s.meanMillis, s.count);
+            }
+            System.out.printf("stages: parse queue peak %d, %d pages parsed on the fetch thread; admission queue peak %d%n",
+                    parsePeak.get(), snapshot.gauge(CrawlMetrics.PARSE_INLINE), admissionPeak.get());
+            for (Map.Entry<String, CrawlMetrics.HostLimits> e : snapshot.hostLimits.entrySet()) {
+                CrawlMetrics.HostLimits h = e.getValue();
+                System.out.printf("host limits: concurrency %d, timeout %d ms, p50 %.1f ms, p95 %.1f ms; %d up, %d down%n",
+                        h.concurrency, h.timeoutMillis, h.p50Millis, h.p95Millis,
+                        snapshot.counter(CrawlMetrics.HOST_LIMIT_INCREASES), snapshot.counter(CrawlMetrics.HOST_LIMIT_DECREASES));
+            }
+            System.out.printf("throttling: %d turned away by the site, %d throttled, %d timeouts, %d retried, %d pauses%n",
+                    server.turnedAwayCount(), snapshot.counter(CrawlMetrics.FETCH_THROTTLED),
+                    snapshot.counter(CrawlMetrics.FETCH_TIMEOUTS), snapshot.counter(CrawlMetrics.FETCH_RETRIED),
+                    snapshot.counter(CrawlMetrics.HOST_PAUSES));
+            System.out.printf("peak heap: %.1f MB%n", peakHeap / (1024.0 * 1024.0));
+
+            if (pagesPerSec < minPagesPerSec) {
+                System.out.printf("FAILED: %.1f pages/s is below the minimum of %.1f%n", pagesPerSec, minPagesPerSec);
+                System.exit(1);
+            }
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    // Records how long every GET takes, from the request until the whole response is in
+    private static class TimingFetcher implements Fetcher {
+        private final Fetcher fetcher;
+        private final ConcurrentLinkedQueue<Long> nanos = new ConcurrentLinkedQueue<>();
+
+        TimingFetcher(Fetcher fetcher) {
+            this.fetcher = fetcher;
+        }
+
+        @Override
+        public CompletableFuture<FetchResult> get(String url, String etag, String lastModified, long timeoutMillis) {
+            long start = System.nanoTime();
+            return this.fetcher.get(url, etag, lastModified, timeoutMillis)
+                    .whenComplete((r, e) -> this.nanos.add(System.nanoTime() - start));
+        }
+
+        @Override
+        public CompletableFuture<FetchResult> head(String url, long timeoutMillis) {
+            return this.fetcher.head(url, timeoutMillis);
+        }
+
+        @Override
+        public void close() {
+            this.fetcher.close();
+        }
+
+        long[] latencies() {
+            long[] sorted = new long[this.nanos.size()];
+            int i = 0;
+            for (Long n : this.nanos) {
+                if (i == sorted.length) break;
+                sorted[i++] = n;
+            }
+            Arrays.sort(sorted, 0, i);
+            return i == sorted.length ? sorted : Arrays.copyOf(sorted, i);
+        }
+    }
+}
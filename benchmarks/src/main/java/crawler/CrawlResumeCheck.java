@@ -0,0 +1,66 @@
+package crawler;
+
+import bench.SyntheticSite;
+import model.CrawlConfig;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Checks resuming a crawl from its state directory (CrawlConfig.setStateDirectory) against a generated
+// site on 127.0.0.1: a crawl that used up its page budget, resumed with the same budget, ends at once
+// without fetching anything or failing (a resume races its own start-up against the workers, so each
+// round resumes the same state many times), and extended with a budget for the whole site, it reaches
+// every page, including the ones only linked from pages fetched after the budget ran out. Exits with
+// status 1 on the first check that fails.
+//
+//   java -cp benchmarks/target/benchmarks.jar crawler.CrawlResumeCheck [rounds, default 5]
+public class CrawlResumeCheck {
+    private static final int MAX_PAGES = 300;
+    private static final int RESUMES = 20;
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        SyntheticSite.Options options = new SyntheticSite.Options();
+        options.fanout = 20; // thousands of links still queued when the budget runs out
+        options.pageBytes = 2000;
+        SyntheticSite.Options small = new SyntheticSite.Options();
+        small.crossLinks = 0; // every page is only linked from its parent
+        small.pageBytes = 2000;
+        try (SyntheticSite site = SyntheticSite.start(options); SyntheticSite smallSite = SyntheticSite.start(small)) {
+            for (int round = 1; round <= rounds; round++) {
+                Path state = Files.createTempDirectory("crawl-resume-check");
+                long first = crawl(site, options, state, MAX_PAGES);
+                for (int i = 0; i < RESUMES; i++) {
+                    long resumed = crawl(site, options, state, MAX_PAGES);
+                    check(resumed == first, "resumed at the same budget, the crawl logged " + resumed
+                            + " pages instead of the " + first + " it had");
+                }
+                System.out.println("round " + round + ": " + first + " pages, resumed " + RESUMES + " times with the budget spent");
+
+                state = Files.createTempDirectory("crawl-resume-check");
+                first = crawl(smallSite, small, state, 40); // runs out halfway through the second level
+                long extended = crawl(smallSite, small, state, smallSite.pageCount());
+                check(extended == smallSite.pageCount(), "extended to the whole site, the crawl logged " + extended
+                        + " of its " + smallSite.pageCount() + " pages");
+                System.out.println("round " + round + ": " + first + " pages, extended to all " + extended);
+            }
+        }
+    }
+
+    // Pages logged by a crawl of the site, counting the ones replayed from the state directory
+    private static long crawl(SyntheticSite site, SyntheticSite.Options options, Path state, int maxPages) throws Exception {
+        CrawlConfig config = new CrawlConfig(site.rootUrl(), options.topic, options.depth, maxPages);
+        config.setMaxLinksPerPage(options.fanout + options.crossLinks);
+        config.setStateDirectory(state.toString());
+        CrawlManager manager = new CrawlManager(config, m -> {}, n -> {});
+        manager.startCrawlAsync().get(60, TimeUnit.SECONDS);
+        return manager.getPagesLogged();
+    }
+
+    private static void check(boolean ok, String message) {
+        if (ok) return;
+        System.err.println("FAILED: " + message);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,89 @@
+package crawler;
+
+import bench.Corpus;
+import model.CrawlConfig;
+import model.VisitedSetType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// CrawlManager.submitNewLink on the corpus links (normalization, budget check, visited-set dedupe and the
+// frontier), from one thread and from many at once. Each iteration runs against a fresh crawl whose
+// fetches never complete, so nothing is downloaded and admitted links just wait in the frontier. After
+// the first pass over the corpus almost every link is a repeat, as it is in a real crawl.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LinkAdmissionBenchmark {
+    @Param({"EXACT", "FINGERPRINT", "BLOOM"})
+    public VisitedSetType visitedSet;
+
+    private String[] urls;
+    private ParkedFetcher fetcher;
+    private CrawlManager manager;
+    private CompletableFuture<Void> crawl;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        @Setup
+        public void start(ThreadParams thread) {
+            this.next = thread.getThreadIndex() * 997; // threads start at different links
+        }
+
+        String next(String[] urls) {
+            if (this.next >= urls.length) this.next %= urls.length;
+            return urls[this.next++];
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void load() {
+        this.urls = Corpus.urls();
+    }
+
+    @Setup(Level.Iteration)
+    public void startCrawl() {
+        CrawlConfig config = new CrawlConfig(Corpus.SEED, Corpus.TOPICS.get(0), 3, 100_000);
+        config.setVisitedSetType(this.visitedSet);
+        this.fetcher = new ParkedFetcher();
+        this.manager = new CrawlManager(config, m -> {}, n -> {}, this.fetcher);
+        this.crawl = this.manager.startCrawlAsync();
+    }
+
+    @TearDown(Level.Iteration)
+    public void finishCrawl() throws Exception {
+        this.fetcher.release(); // the queued tasks now finish straight away and the crawl winds down
+        this.crawl.get(1, TimeUnit.MINUTES);
+    }
+
+    @Benchmark
+    public boolean submitNewLink(Cursor cursor) {
+        return this.manager.submitNewLink(cursor.next(this.urls), Corpus.SEED, 1, 1.0);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean submitNewLinkContended(Cursor cursor) {
+        return this.manager.submitNewLink(cursor.next(this.urls), Corpus.SEED, 1, 1.0);
+    }
+}
@@ -0,0 +1,23 @@
+package crawler;
+
+import java.util.concurrent.CompletableFuture;
+
+// Fetcher that never touches the network: every request stays pending until release(), and from then on
+// completes at once as a page without a text body, so tasks finish without parsing anything
+class ParkedFetcher implements Fetcher {
+    private final CompletableFuture<Void> released = new CompletableFuture<>();
+
+    @Override
+    public CompletableFuture<FetchResult> get(String url, String etag, String lastModified, long timeoutMillis) {
+        return this.released.thenApply(v -> FetchResult.withoutBody(url, 200, 0, "application/octet-stream", null, null, -1, -1));
+    }
+
+    @Override
+    public CompletableFuture<FetchResult> head(String url, long timeoutMillis) {
+        return get(url, null, null);
+    }
+
+    void release() {
+        this.released.complete(null);
+    }
+}
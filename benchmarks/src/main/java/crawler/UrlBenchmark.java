@@ -0,0 +1,56 @@
+package crawler;
+
+import bench.Corpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Per-link URL normalization on the corpus links, one link per operation, next to the URI-based
+// reference it replaced (the link filter has UrlFilterBenchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class UrlBenchmark {
+    private String[] urls;
+    private int next;
+
+    @Setup
+    public void load() {
+        this.urls = Corpus.urls();
+        UrlNormalizerCheck.verify(this.urls); // timing a fast path that gets URLs wrong is pointless
+    }
+
+    private String nextUrl() {
+        String url = this.urls[this.next];
+        this.next = this.next + 1 == this.urls.length ? 0 : this.next + 1;
+        return url;
+    }
+
+    @Benchmark
+    public String normalizeUrl() {
+        return CrawlManager.normalizeUrl(nextUrl());
+    }
+
+    @Benchmark
+    public String uriNormalize() {
+        return UrlNormalizer.uriNormalize(nextUrl());
+    }
+
+    // As used for parent URLs
+    @Benchmark
+    public String normalizeCached() {
+        return UrlNormalizer.normalizeCached(nextUrl());
+    }
+}
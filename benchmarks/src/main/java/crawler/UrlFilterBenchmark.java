@@ -0,0 +1,101 @@
+package crawler;
+
+import bench.Corpus;
+import model.CrawlConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// The link filter, one link per operation, over the corpus links or a million links made from them
+// (other hosts, paths, extensions and tracking parameters). uriReference is the URI-and-regex filter
+// UrlFilter replaced; it only knows the default rules.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class UrlFilterBenchmark {
+    private static final String[] HOSTS = {"nodejs.org", "www.nodejs.org", "docs.nodejs.org", "github.com",
+            "developer.mozilla.org", "cdn.statically.io", "blog.nodejs.org", "ads.nodejs.org"};
+    private static final String[] SUFFIXES = {"", "?utm_source=feed&utm_medium=rss", "?page=2", "?id=7&ref=home#top",
+            "", ".png", ".css", ""};
+
+    @Param({"corpus", "generated"})
+    public String links;
+
+    @Param({"default", "rules"})
+    public String filter;
+
+    private String[] urls;
+    private int next;
+    private UrlFilter compiled;
+
+    @Setup
+    public void load() {
+        String[] corpus = Corpus.urls();
+        UrlFilterCheck.verify(Corpus.SEED, corpus); // timing a filter that gets links wrong is pointless
+        this.urls = this.links.equals("corpus") ? corpus : generate(corpus, 1_000_000);
+
+        CrawlConfig config = new CrawlConfig(Corpus.SEED, Corpus.TOPICS.get(0), 3, 1000);
+        if (this.filter.equals("rules")) {
+            config.setAllowedHosts(Arrays.asList("github.com", "developer.mozilla.org"));
+            config.setAllowedDomains(Arrays.asList("nodejs.org", "python.org"));
+            config.setExcludedHosts(Arrays.asList("ads.nodejs.org"));
+            config.setIncludedPaths(Arrays.asList("/docs/", "/api/", "/en-US/docs/", "/nodejs/"));
+            config.setExcludedPaths(Arrays.asList("/docs/latest-v18.x/", "/api/deprecated", "/nodejs/node/issues"));
+            config.setExcludedExtensions(Arrays.asList("jpg", "jpeg", "png", "gif", "svg", "ico", "css", "js", "mp3",
+                    "mp4", "mov", "zip", "gz", "pdf"));
+            config.setStrippedQueryParams(Arrays.asList("utm_*", "ref", "fbclid"));
+        }
+        this.compiled = UrlFilter.compile(config);
+    }
+
+    // Each corpus link with its host, ending and query swapped for others in turn
+    private static String[] generate(String[] corpus, int n) {
+        String[] out = new String[n];
+        for (int i = 0; i < n; i++) {
+            String url = corpus[i % corpus.length];
+            int hostStart = url.indexOf("://");
+            int pathStart = hostStart < 0 ? -1 : url.indexOf('/', hostStart + 3);
+            if (pathStart < 0) {
+                out[i] = url;
+                continue;
+            }
+            int round = i / corpus.length;
+            String path = url.substring(pathStart);
+            int cut = path.indexOf('?');
+            if (cut >= 0 && round % 2 == 1) path = path.substring(0, cut);
+            out[i] = url.substring(0, hostStart + 3) + HOSTS[(i + round) % HOSTS.length] + path
+                    + (path.indexOf('?') < 0 && path.indexOf('#') < 0 ? SUFFIXES[(i * 7 + round) % SUFFIXES.length] : "");
+        }
+        return out;
+    }
+
+    private String nextUrl() {
+        String url = this.urls[this.next];
+        this.next = this.next + 1 == this.urls.length ? 0 : this.next + 1;
+        return url;
+    }
+
+    @Benchmark
+    public String urlFilter() {
+        return this.compiled.apply(nextUrl());
+    }
+
+    @Benchmark
+    public boolean uriReference() {
+        return UrlFilterCheck.uriShouldFollow(Corpus.SEED, nextUrl());
+    }
+}
@@ -0,0 +1,102 @@
+package crawler;
+
+import bench.Corpus;
+import model.CrawlConfig;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Random;
+
+// Checks that UrlFilter, under the default rules, follows exactly the links the URI-based filter it
+// replaced followed, on the corpus URLs and on generated ones (see UrlNormalizerCheck). The filter
+// benchmark runs the corpus check before measuring anything.
+//
+//   java -cp benchmarks/target/benchmarks.jar crawler.UrlFilterCheck [generated URLs, default 4000000]
+public class UrlFilterCheck {
+    private static final String[] HOSTS = {"nodejs.org", "NodeJS.org", "www.nodejs.org", "nodejs.org:443",
+            "user@nodejs.org", "docs.nodejs.org", "nodejs.org.evil.com", "github.com", "127.0.0.1", "[::1]", ""};
+    private static final String[] SCHEMES = {"https://", "http://", "HTTPS://", "ftp://", "mailto:", "javascript:", ""};
+    private static final String[] SEGMENTS = {"/", "api", "docs", "index.html", "a.JPG", "x.png", "style.css", "v.mp4",
+            ".", "..", "a.b.c", "%20", "%zz", " ", "|", "{", "\u00e9", ";p=1"};
+    private static final String[] QUERIES = {"", "?", "?a=1", "?f=x.png", "?a b"};
+    private static final String[] FRAGMENTS = {"", "#", "#top", "#a#b", "#x.css"};
+
+    public static void main(String[] args) {
+        int generated = args.length > 0 ? Integer.parseInt(args[0]) : 4_000_000;
+        String seed = Corpus.SEED;
+
+        int followed = verify(seed, Corpus.urls());
+        System.out.println("corpus: " + Corpus.urls().length + " URLs, " + followed + " followed");
+
+        Random random = new Random(11);
+        String[] batch = new String[10_000];
+        followed = 0;
+        for (int done = 0; done < generated; done += batch.length) {
+            int n = Math.min(batch.length, generated - done);
+            String[] urls = n == batch.length ? batch : new String[n];
+            for (int i = 0; i < n; i++) urls[i] = generate(random);
+            followed += verify(seed, urls);
+        }
+        System.out.println("generated: " + generated + " URLs, " + followed + " followed");
+    }
+
+    // Number of URLs followed; throws on the first one where the filters disagree
+    public static int verify(String seed, String[] urls) {
+        UrlFilter filter = UrlFilter.compile(new CrawlConfig(seed, "x", 1, 1));
+        int followed = 0;
+        for (String url : urls) {
+            boolean compiled = filter.accepts(url);
+            if (compiled != uriShouldFollow(seed, url)) {
+                throw new IllegalStateException("UrlFilter " + (compiled ? "follows " : "skips ") + url
+                        + " but the URI-based filter " + (compiled ? "skips" : "follows") + " it");
+            }
+            if (compiled) followed++;
+        }
+        return followed;
+    }
+
+    // What CrawlTask.shouldFollow did before UrlFilter: http(s), same host as the seed, not a file type
+    // that can't hold links
+    public static boolean uriShouldFollow(String seed, String targetUrl) {
+        if (targetUrl == null) return false;
+        String t = targetUrl.trim();
+        if (t.isEmpty() || t.startsWith("javascript:") || t.startsWith("mailto:")) return false;
+
+        try {
+            URI base = new URI(seed);
+            URI u = new URI(t);
+
+            String scheme = (u.getScheme() == null ? "http" : u.getScheme().toLowerCase());
+            if (!scheme.equals("http") && !scheme.equals("https")) return false;
+
+            if (!hostKey(u.getHost()).equals(hostKey(base.getHost()))) return false;
+
+            String path = u.getPath() == null ? "" : u.getPath().toLowerCase();
+            if (path.matches(".*\\.(?:jpg|jpeg|png|gif|svg|ico|css|mp3|mp4|mov)$"))
+                return false;
+
+            return true;
+        } catch (URISyntaxException e) {
+            return false;
+        }
+    }
+
+    private static String hostKey(String h) {
+        if (h == null) return "";
+        h = h.toLowerCase();
+        return h.startsWith("www.") ? h.substring(4) : h;
+    }
+
+    private static String generate(Random random) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(pick(random, SCHEMES)).append(pick(random, HOSTS));
+        int segments = random.nextInt(5);
+        for (int i = 0; i < segments; i++) sb.append(random.nextBoolean() ? "/" : "").append(pick(random, SEGMENTS));
+        sb.append(pick(random, QUERIES)).append(pick(random, FRAGMENTS));
+        return sb.toString();
+    }
+
+    private static String pick(Random random, String[] options) {
+        return options[random.nextInt(options.length)];
+    }
+}
@@ -0,0 +1,76 @@
+package crawler;
+
+import bench.Corpus;
+
+import java.util.Random;
+
+// Checks that UrlNormalizer's fast path gives exactly what the URI-based implementation gives, on the
+// corpus URLs and on generated ones that mix schemes, hosts, ports, escapes, dot segments, queries and
+// fragments. The URL benchmarks run the corpus check before measuring anything.
+//
+//   java -cp benchmarks/target/benchmarks.jar crawler.UrlNormalizerCheck [generated URLs, default 4000000]
+public class UrlNormalizerCheck {
+    // Everyday URL parts first, then the odd ones; generate() mostly picks from the first group so that
+    // plenty of URLs take the fast path
+    private static final String[][] SCHEMES = {{"http://", "https://", "HTTP://"},
+            {"HtTpS://", "ftp://", "http:/", "", "mailto:", "http:"}};
+    private static final String[][] HOSTS = {{"example.com", "Example.COM", "a-b.c", "127.0.0.1", "h", "WWW.Site.Org",
+            "1.2.3", "a.1b"}, {"a-.com", "-a.com", "1.2.3.256", "010.1.1.1", "123", "x.y.", "my_host", "[::1]",
+            "user@h.com", "", "ex%41.com", "\u00e9.com", "a..b"}};
+    private static final String[][] PORTS = {{"", ":80", ":443", ":8080", ":080"},
+            {":0443", ":", ":99999", ":123456", ":8x"}};
+    private static final String[][] SEGMENTS = {{"/", "a", "B", ".", "..", ";x", "=", ":", "@", "~", "(", ")", "!",
+            "$", "&", "*", "+", ",", "-", "_", "index.html", "/a/", "x.y"}, {"//", "%20", "%2F", "%41", " ",
+            "\u00e9", "[", "]", "|", "'", "/./", "/../"}};
+    private static final String[][] QUERIES = {{"", "?", "?a=1", "?a=b&c=d", "?x=[1]", "?a?b", "?/p"},
+            {"?q=%20", "?a b", "?#", "?\u00e9"}};
+    private static final String[][] FRAGMENTS = {{"", "#", "#frag", "#[]"}, {"#a#b", "#x y", "#%zz"}};
+
+    public static void main(String[] args) {
+        int generated = args.length > 0 ? Integer.parseInt(args[0]) : 4_000_000;
+
+        int fast = verify(Corpus.urls());
+        System.out.println("corpus: " + Corpus.urls().length + " URLs, " + fast + " on the fast path");
+
+        Random random = new Random(7);
+        String[] batch = new String[10_000];
+        fast = 0;
+        for (int done = 0; done < generated; done += batch.length) {
+            int n = Math.min(batch.length, generated - done);
+            String[] urls = n == batch.length ? batch : new String[n];
+            for (int i = 0; i < n; i++) urls[i] = generate(random);
+            fast += verify(urls);
+        }
+        System.out.println("generated: " + generated + " URLs, " + fast + " on the fast path");
+    }
+
+    // Number of URLs the fast path handled; throws on the first one where it disagrees
+    public static int verify(String[] urls) {
+        int fast = 0;
+        for (String url : urls) {
+            String fastResult = UrlNormalizer.fastNormalize(url);
+            if (fastResult == null) continue;
+            fast++;
+            String reference = UrlNormalizer.uriNormalize(url);
+            if (!fastResult.equals(reference)) {
+                throw new IllegalStateException("Fast path normalizes " + url + " to " + fastResult
+                        + " but the URI implementation gives " + reference);
+            }
+        }
+        return fast;
+    }
+
+    private static String generate(Random random) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(pick(random, SCHEMES)).append(pick(random, HOSTS)).append(pick(random, PORTS));
+        int segments = random.nextInt(6);
+        for (int i = 0; i < segments; i++) sb.append(pick(random, SEGMENTS));
+        sb.append(pick(random, QUERIES)).append(pick(random, FRAGMENTS));
+        return sb.toString();
+    }
+
+    private static String pick(Random random, String[][] options) {
+        String[] group = random.nextInt(8) == 0 ? options[1] : options[0];
+        return group[random.nextInt(group.length)];
+    }
+}
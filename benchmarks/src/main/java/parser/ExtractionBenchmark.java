@@ -0,0 +1,89 @@
+package parser;
+
+import bench.Corpus;
+import crawler.LinkScorer;
+import model.SentenceMatch;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// What CrawlTask does with a fetched page, per corpus page: text and scored links by either extraction
+// mode, and sentence matching on its own. Operations are pages, so ops/s is pages per second.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExtractionBenchmark {
+    @Param({"nodejs-index.html", "nodejs-path.html", "nodejs-url.html", "underscore.html",
+            "expat-reference.html", "zlib-how.html", "python-idle.html"})
+    public String page;
+
+    private Corpus.Page corpusPage;
+    private String html;
+    private String text;
+    private HTMLParser parser;
+    private LinkScorer scorer;
+
+    @Setup
+    public void load() throws IOException {
+        this.corpusPage = Corpus.page(this.page);
+        Document doc = Jsoup.parse(new ByteArrayInputStream(this.corpusPage.body), null, this.corpusPage.url);
+        this.html = doc.outerHtml();
+        this.text = HTMLParser.pageText(doc);
+        this.parser = new HTMLParser(Corpus.TOPICS);
+        this.scorer = new LinkScorer(this.parser.getMatcher());
+    }
+
+    // ExtractionMode.DOM
+    @Benchmark
+    public void domExtraction(Blackhole bh) throws IOException {
+        Document doc = Jsoup.parse(new ByteArrayInputStream(this.corpusPage.body), null, this.corpusPage.url);
+        String pageText = HTMLParser.pageText(doc);
+        bh.consume(this.parser.extractMatchingSentencesFromText(pageText, this.corpusPage.url));
+        for (Element link : doc.select("a[href]")) {
+            String absUrl = link.absUrl("href");
+            bh.consume(this.scorer.linkScore(link, absUrl));
+        }
+    }
+
+    // ExtractionMode.STREAMING
+    @Benchmark
+    public void streamingExtraction(Blackhole bh) {
+        StreamingHtmlExtractor.Result r = StreamingHtmlExtractor.extract(this.corpusPage.body, null, this.corpusPage.url);
+        bh.consume(this.parser.extractMatchingSentencesFromText(r.text, this.corpusPage.url));
+        for (StreamingHtmlExtractor.Anchor a : r.anchors) {
+            bh.consume(this.scorer.linkScore(a.text, a.context, a.url));
+        }
+    }
+
+    // From markup, parse included
+    @Benchmark
+    public List<SentenceMatch> extractMatchingSentences() {
+        return this.parser.extractMatchingSentences(this.html, this.corpusPage.url);
+    }
+
+    // Just the topic automaton and sentence splitting
+    @Benchmark
+    public List<SentenceMatch> extractMatchingSentencesFromText() {
+        return this.parser.extractMatchingSentencesFromText(this.text, this.corpusPage.url);
+    }
+}
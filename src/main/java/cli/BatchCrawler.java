@@ -0,0 +1,264 @@
+package cli;
+
+import crawler.CrawlManager;
+import crawler.CrawlMetrics;
+import crawler.CrawlPool;
+import crawler.NdjsonCrawlLogSink;
+import model.CrawlConfig;
+import model.ExtractionMode;
+import model.FetchEngine;
+import model.SentenceMatch;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Headless batch mode: runs every crawl listed in a seeds file in one JVM, on one CrawlPool (worker
+// threads, timer and HTTP connections shared by all of them), and writes each crawl's matches and
+// crawl log to files.
+//
+//   java -cp target/topic-focused-web-crawler-1.0.0.jar cli.BatchCrawler seeds.tsv [options]
+//
+// Each line of the seeds file is a seed URL and its comma-separated topics, optionally followed by a
+// depth limit and a page budget, all separated by tabs. Blank lines and lines starting with # are skipped.
+//
+//   --out DIR          results, one directory per crawl plus summary.tsv (crawl-output)
+//   --parallel N       crawls running at once (8)
+//   --workers N        fetch threads shared by all crawls (64)
+//   --parse-threads N  parse threads shared by all crawls (one per core)
+//   --connections N    async fetches in flight across all crawls (256)
+//   --depth N          depth limit for lines without one (2)
+//   --max-pages N      page budget for lines without one (100)
+//   --engine E         BLOCKING or ASYNC (BLOCKING)
+//   --extraction M     DOM or STREAMING (DOM)
+//   --concurrency N    pages in flight per crawl (CrawlConfig default)
+//   --per-host N       pages in flight per host, per crawl (CrawlConfig default)
+//   --host-delay-ms N  time between requests to a host, per crawl (CrawlConfig default)
+//
+// Every crawl gets a directory <out>/<line number>-<host> with matches.ndjson (one matching sentence
+// per line) and crawl-log.ndjson (one visited page per line). The exit status is 1 if any crawl failed.
+public class BatchCrawler {
+    private int parallel = 8;
+    private int workers = 64;
+    private int parseThreads = Runtime.getRuntime().availableProcessors();
+    private int connections = 256;
+    private int depth = 2;
+    private int maxPages = 100;
+    private FetchEngine engine = FetchEngine.BLOCKING;
+    private ExtractionMode extraction = ExtractionMode.DOM;
+    private Integer concurrency;
+    private Integer perHost;
+    private Long hostDelayMillis;
+    private Path out = Paths.get("crawl-output");
+    private final AtomicInteger failed = new AtomicInteger();
+
+    // One line of the seeds file
+    private static class Seed {
+        final int line;
+        final String url;
+        final String topics;
+        final int depth;
+        final int maxPages;
+
+        Seed(int line, String url, String topics, int depth, int maxPages) {
+            this.line = line;
+            this.url = url;
+            this.topics = topics;
+            this.depth = depth;
+            this.maxPages = maxPages;
+        }
+    }
+
+    private static final String USAGE = "Usage: BatchCrawler <seeds file> [--out DIR] [--parallel N] [--workers N] "
+            + "[--parse-threads N] [--connections N] "
+            + "[--depth N] [--max-pages N] [--engine BLOCKING|ASYNC] [--extraction DOM|STREAMING] "
+            + "[--concurrency N] [--per-host N] [--host-delay-ms N]";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        BatchCrawler batch = new BatchCrawler();
+        for (int i = 1; i < args.length; i += 2) {
+            if (i + 1 == args.length) throw new IllegalArgumentException("Missing value for " + args[i] + "\n" + USAGE);
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--out": batch.out = Paths.get(value); break;
+                case "--parallel": batch.parallel = Integer.parseInt(value); break;
+                case "--workers": batch.workers = Integer.parseInt(value); break;
+                case "--parse-threads": batch.parseThreads = Integer.parseInt(value); break;
+                case "--connections": batch.connections = Integer.parseInt(value); break;
+                case "--depth": batch.depth = Integer.parseInt(value); break;
+                case "--max-pages": batch.maxPages = Integer.parseInt(value); break;
+                case "--engine": batch.engine = FetchEngine.valueOf(value.toUpperCase()); break;
+                case "--extraction": batch.extraction = ExtractionMode.valueOf(value.toUpperCase()); break;
+                case "--concurrency": batch.concurrency = Integer.parseInt(value); break;
+                case "--per-host": batch.perHost = Integer.parseInt(value); break;
+                case "--host-delay-ms": batch.hostDelayMillis = Long.parseLong(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        List<Seed> seeds = batch.readSeeds(Paths.get(args[0]));
+        batch.run(seeds);
+        System.exit(batch.failed.get() > 0 ? 1 : 0);
+    }
+
+    private List<Seed> readSeeds(Path file) throws IOException {
+        List<Seed> seeds = new ArrayList<>();
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] fields = line.split("\t");
+            if (fields.length < 2) {
+                System.err.println(file + ":" + (i + 1) + ": expected a seed URL and topics separated by a tab");
+                continue;
+            }
+            int d = fields.length > 2 ? Integer.parseInt(fields[2].trim()) : this.depth;
+            int p = fields.length > 3 ? Integer.parseInt(fields[3].trim()) : this.maxPages;
+            seeds.add(new Seed(i + 1, fields[0].trim(), fields[1].trim(), d, p));
+        }
+        return seeds;
+    }
+
+    // Runs all crawls, at most `parallel` at a time
+    private void run(List<Seed> seeds) throws IOException, InterruptedException {
+        Files.createDirectories(this.out);
+        Semaphore running = new Semaphore(Math.max(1, this.parallel));
+        long start = System.nanoTime();
+        try (CrawlPool pool = new CrawlPool(this.workers, this.parseThreads, this.connections);
+             Writer summary = Files.newBufferedWriter(this.out.resolve("summary.tsv"), StandardCharsets.UTF_8)) {
+            summary.write("line\tseed\tresult\tpages\tfailed\tmatches\tseconds\n");
+            for (Seed seed : seeds) {
+                running.acquire();
+                start(seed, pool, summary, running);
+            }
+            running.acquire(Math.max(1, this.parallel)); // wait for the last ones
+        }
+        System.out.printf("%d crawls in %.1f s, %d failed; results in %s%n", seeds.size(),
+                (System.nanoTime() - start) / 1e9, this.failed.get(), this.out);
+    }
+
+    // Starts one crawl and releases its permit when the crawl is over (or could not be started)
+    private void start(Seed seed, CrawlPool pool, Writer summary, Semaphore running) {
+        Path dir = this.out.resolve(String.format("%04d-%s", seed.line, hostName(seed.url)));
+        MatchWriter matches = null;
+        try {
+            Files.createDirectories(dir);
+            CrawlConfig config = new CrawlConfig(seed.url, seed.topics, seed.depth, seed.maxPages);
+            config.setFetchEngine(this.engine);
+            config.setExtractionMode(this.extraction);
+            if (this.concurrency != null) config.setMaxConcurrency(this.concurrency);
+            if (this.perHost != null) config.setMaxConcurrencyPerHost(this.perHost);
+            if (this.hostDelayMillis != null) config.setHostDelayMillis(this.hostDelayMillis);
+            config.setCrawlLogFile(dir.resolve("crawl-log.ndjson").toString());
+            config.setCrawlLogWindow(1);       // the whole log is in the file; nothing reads the window
+            config.setMetricsIntervalMillis(0); // only the final numbers go into the summary
+
+            MatchWriter writer = new MatchWriter(dir.resolve("matches.ndjson"));
+            matches = writer;
+            CrawlManager manager = new CrawlManager(config, writer::write, n -> {}, pool);
+            long crawlStart = System.nanoTime();
+            manager.startCrawlAsync().whenComplete((ignored, error) -> {
+                writer.close();
+                if (error != null) {
+                    this.failed.incrementAndGet();
+                    System.err.println("Crawl of " + seed.url + " failed: " + error.getMessage());
+                }
+                CrawlMetrics.Snapshot s = manager.getMetrics().snapshot();
+                String line = String.format("%d\t%s\t%s\t%d\t%d\t%d\t%.1f%n", seed.line, seed.url,
+                        error == null ? "ok" : "failed", s.counter(CrawlMetrics.PAGES_FETCHED),
+                        s.counter(CrawlMetrics.PAGES_FAILED), s.counter(CrawlMetrics.MATCHES),
+                        (System.nanoTime() - crawlStart) / 1e9);
+                summarize(summary, line);
+                System.out.print(line);
+                running.release();
+            });
+        } catch (IOException | RuntimeException e) {
+            if (matches != null) matches.close();
+            this.failed.incrementAndGet();
+            System.err.println("Cannot start crawl of " + seed.url + ": " + e.getMessage());
+            summarize(summary, String.format("%d\t%s\tfailed\t0\t0\t0\t0.0%n", seed.line, seed.url));
+            running.release();
+        }
+    }
+
+    private static void summarize(Writer summary, String line) {
+        synchronized (summary) {
+            try {
+                summary.write(line);
+                summary.flush();
+            } catch (IOException e) {
+                System.err.println("Error writing summary: " + e.getMessage());
+            }
+        }
+    }
+
+    // Host of the seed, safe to use in a directory name
+    private static String hostName(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            if (host != null) return host.replaceAll("[^A-Za-z0-9.-]", "_");
+        } catch (IllegalArgumentException e) {
+            // fall through
+        }
+        return "seed";
+    }
+
+    // Matching sentences of one crawl, one JSON object per line; called from the crawl's worker threads
+    private static class MatchWriter {
+        private final Path file;
+        private final Writer out;
+        private final StringBuilder line = new StringBuilder(256);
+        private boolean failed = false;
+
+        MatchWriter(Path file) throws IOException {
+            this.file = file;
+            this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        }
+
+        synchronized void write(SentenceMatch m) {
+            if (this.failed) return;
+            this.line.setLength(0);
+            this.line.append("{\"url\":");
+            NdjsonCrawlLogSink.quote(this.line, m.getSourceUrl());
+            this.line.append(",\"topics\":[");
+            for (int i = 0; i < m.getTopics().size(); i++) {
+                if (i > 0) this.line.append(',');
+                NdjsonCrawlLogSink.quote(this.line, m.getTopics().get(i));
+            }
+            this.line.append("],\"sentence\":");
+            NdjsonCrawlLogSink.quote(this.line, m.getSentence());
+            this.line.append("}\n");
+            try {
+                this.out.append(this.line);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        synchronized void close() {
+            try {
+                this.out.close();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void fail(IOException e) {
+            if (this.failed) return;
+            this.failed = true;
+            System.err.println("Error writing matches " + this.file + ": " + e.getMessage());
+        }
+    }
+}
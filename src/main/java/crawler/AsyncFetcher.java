@@ -0,0 +1,178 @@
+package crawler;
+
+import org.jsoup.helper.HttpConnection;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+// Non-blocking fetches through java.net.http.HttpClient. Requests are multiplexed on the client's
+// selector thread and responses are completed on the given executor, so the number of in-flight
+// pages is bounded by the frontier rather than by the number of threads.
+public class AsyncFetcher implements Fetcher {
+    private static final Duration CONNECT_TIMEOUT = Duration.ofMillis(DEFAULT_TIMEOUT_MILLIS); // per client, not per request
+
+    private final HttpClient client;
+    private final long maxBodyBytes;
+
+    public AsyncFetcher(Executor executor) {
+        this(executor, 0);
+    }
+
+    // Bodies longer than maxBodyBytes (0 for no limit) are cut off there and marked truncated
+    public AsyncFetcher(Executor executor, long maxBodyBytes) {
+        this(newClient(executor), maxBodyBytes);
+    }
+
+    // Over an existing client, so several crawls can share its connection pool (see CrawlPool)
+    AsyncFetcher(HttpClient client, long maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+        this.client = client;
+    }
+
+    static HttpClient newClient(Executor executor) {
+        return HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .executor(executor)
+                .build();
+    }
+
+    private static HttpRequest.Builder request(String url, long timeoutMillis) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(Math.max(1, timeoutMillis)))
+                .header("User-Agent", HttpConnection.DEFAULT_UA);
+    }
+
+    // A body read up to the size limit
+    private static class Body {
+        final byte[] bytes;
+        final boolean truncated;
+
+        Body(byte[] bytes, boolean truncated) {
+            this.bytes = bytes;
+            this.truncated = truncated;
+        }
+    }
+
+    // Collects the body as it arrives and cancels the download once it passes the limit
+    private static class BoundedSubscriber implements HttpResponse.BodySubscriber<Body> {
+        private final long limit;
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final CompletableFuture<Body> result = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        BoundedSubscriber(long maxBytes) {
+            this.limit = maxBytes <= 0 ? Long.MAX_VALUE : maxBytes;
+        }
+
+        @Override
+        public CompletionStage<Body> getBody() {
+            return this.result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (this.result.isDone()) return;
+            for (ByteBuffer b : items) {
+                long left = this.limit - this.out.size();
+                if (b.remaining() > left) {
+                    write(b, (int) left);
+                    this.subscription.cancel();
+                    this.result.complete(new Body(this.out.toByteArray(), true));
+                    return;
+                }
+                write(b, b.remaining());
+            }
+        }
+
+        private void write(ByteBuffer b, int n) {
+            if (b.hasArray()) {
+                this.out.write(b.array(), b.arrayOffset() + b.position(), n);
+            } else {
+                byte[] copy = new byte[n];
+                b.get(copy);
+                this.out.write(copy, 0, n);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            this.result.complete(new Body(this.out.toByteArray(), false));
+        }
+    }
+
+    // Only buffer bodies we are going to parse (checked from the headers, before any of the body is read);
+    // everything else is drained so the connection can be reused
+    private HttpResponse.BodyHandler<Body> bodyHandler(long start, long[] headerNanos) {
+        return info -> {
+            headerNanos[0] = System.nanoTime() - start; // called as soon as the headers are in
+            String type = info.headers().firstValue("Content-Type").orElse(null);
+            if (FetchResult.shouldReadBody(info.statusCode(), type)) {
+                return new BoundedSubscriber(this.maxBodyBytes);
+            }
+            return HttpResponse.BodySubscribers.replacing(null);
+        };
+    }
+
+    private static FetchResult toResult(HttpResponse<Body> res, long headerNanos) {
+        String type = res.headers().firstValue("Content-Type").orElse(null);
+        Body body = res.body();
+        long length = FetchResult.parseContentLength(res.headers().firstValue("Content-Length").orElse(null));
+        long size = body == null ? length
+                : body.truncated && length > body.bytes.length ? length : body.bytes.length;
+        return new FetchResult(res.uri().toString(), res.statusCode(), size, type,
+                body == null ? null : FetchResult.charsetOf(type), body == null ? null : body.bytes,
+                res.headers().firstValue("ETag").orElse(null), res.headers().firstValue("Last-Modified").orElse(null),
+                body != null && body.truncated, headerNanos,
+                FetchResult.parseRetryAfter(res.headers().firstValue("Retry-After").orElse(null)));
+    }
+
+    @Override
+    public CompletableFuture<FetchResult> get(String url, String etag, String lastModified, long timeoutMillis) {
+        try {
+            HttpRequest.Builder req = request(url, timeoutMillis).GET();
+            if (etag != null) req.header("If-None-Match", etag);
+            if (lastModified != null) req.header("If-Modified-Since", lastModified);
+            long[] headerNanos = {-1};
+            return this.client.sendAsync(req.build(), bodyHandler(System.nanoTime(), headerNanos))
+                    .thenApply(res -> toResult(res, headerNanos[0]));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<FetchResult> head(String url, long timeoutMillis) {
+        try {
+            return this.client.sendAsync(
+                            request(url, timeoutMillis).method("HEAD", HttpRequest.BodyPublishers.noBody()).build(),
+                            HttpResponse.BodyHandlers.discarding())
+                    .thenApply(res -> FetchResult.head(res.uri().toString(), res.statusCode(),
+                            FetchResult.parseContentLength(res.headers().firstValue("Content-Length").orElse(null)),
+                            res.headers().firstValue("Content-Type").orElse(null)));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package crawler;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+
+// Fetches on the calling thread through Jsoup (HttpURLConnection underneath)
+public class BlockingFetcher implements Fetcher {
+    private final long maxBodyBytes;
+
+    public BlockingFetcher() {
+        this(0);
+    }
+
+    // Bodies longer than maxBodyBytes (0 for no limit) are cut off there and marked truncated
+    public BlockingFetcher(long maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    @Override
+    public CompletableFuture<FetchResult> get(String url, String etag, String lastModified, long timeoutMillis) {
+        try {
+            Connection conn = Jsoup.connect(url)
+                    .timeout(millis(timeoutMillis))
+                    .ignoreHttpErrors(true)
+                    .ignoreContentType(true)
+                    .maxBodySize(0); // the limit is applied below, so a cut-off body can be flagged
+            if (etag != null) conn.header("If-None-Match", etag);
+            if (lastModified != null) conn.header("If-Modified-Since", lastModified);
+            long start = System.nanoTime();
+            Connection.Response res = conn.execute(); // returns once the headers are in
+            long headerNanos = System.nanoTime() - start;
+
+            if (!FetchResult.shouldReadBody(res.statusCode(), res.contentType())) {
+                res.bodyStream().close();
+                return CompletableFuture.completedFuture(FetchResult.withoutBody(res.url().toString(), res.statusCode(),
+                        FetchResult.parseContentLength(res.header("Content-Length")), res.contentType(),
+                        res.header("ETag"), res.header("Last-Modified"), headerNanos,
+                        FetchResult.parseRetryAfter(res.header("Retry-After"))));
+            }
+
+            // type checked from the headers first; the body is then streamed up to the limit and no further
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            boolean truncated;
+            try (InputStream in = res.bodyStream()) {
+                truncated = FetchResult.readBounded(in, this.maxBodyBytes, out);
+            }
+            byte[] body = out.toByteArray();
+            long length = FetchResult.parseContentLength(res.header("Content-Length"));
+            return CompletableFuture.completedFuture(FetchResult.ok(res.url().toString(), res.statusCode(),
+                    truncated && length > body.length ? length : body.length, res.contentType(),
+                    FetchResult.charsetOf(res.contentType()), body, res.header("ETag"), res.header("Last-Modified"), truncated,
+                    headerNanos));
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<FetchResult> head(String url, long timeoutMillis) {
+        try {
+            HttpURLConnection c = (HttpURLConnection) new URL(url).openConnection();
+            c.setInstanceFollowRedirects(true);
+            c.setRequestMethod("HEAD");
+            c.setConnectTimeout(millis(timeoutMillis));
+            c.setReadTimeout(millis(timeoutMillis));
+            c.setRequestProperty("Accept-Encoding", "identity"); // real Content-Length
+            c.connect();
+            FetchResult r = FetchResult.head(c.getURL().toString(), c.getResponseCode(), c.getContentLengthLong(),
+                    c.getContentType());
+            c.disconnect();
+            return CompletableFuture.completedFuture(r);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // Both clients take 0 to mean no timeout at all
+    private static int millis(long timeoutMillis) {
+        return (int) Math.max(1, Math.min(timeoutMillis, Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,72 @@
+package crawler;
+
+import parser.SimHash;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Lock-free Bloom filter over URL fingerprints, for crawls too large to keep even a fingerprint per URL.
+//
+// Sized for the expected number of URLs n and target false-positive rate p with the usual
+// m = -n ln(p) / ln(2)^2 bits and k = (m / n) ln(2) hash functions: at p = 1% that is 9.6 bits
+// (~1.2 bytes) per URL and 7 probes. A false positive makes the crawler skip a page it has not seen.
+public class BloomVisitedSet implements VisitedSet {
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashes;
+    private final AtomicInteger size = new AtomicInteger();
+
+    public BloomVisitedSet(int expectedUrls, double falsePositiveRate) {
+        int n = Math.max(1, expectedUrls);
+        double p = Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (m + 63) / 64));
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * 64;
+        this.hashes = Math.max(1, (int) Math.round((double) this.bitCount / n * Math.log(2)));
+    }
+
+    // Kirsch-Mitzenmacher double hashing: probe i is h1 + i * h2
+    private long probe(long h1, long h2, int i) {
+        return Math.floorMod(h1 + i * h2, this.bitCount);
+    }
+
+    @Override
+    public boolean add(String url) {
+        long h1 = UrlFingerprint.of(url);
+        long h2 = SimHash.mix(h1) | 1;
+        boolean changed = false;
+        for (int i = 0; i < this.hashes; i++) {
+            long bit = probe(h1, h2, i);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << (bit & 63);
+            long current = this.bits.get(word);
+            while ((current & mask) == 0) {
+                long witness = this.bits.compareAndExchange(word, current, current | mask);
+                if (witness == current) {
+                    changed = true;
+                    break;
+                }
+                current = witness;
+            }
+        }
+        if (changed) this.size.incrementAndGet();
+        return changed;
+    }
+
+    @Override
+    public boolean contains(String url) {
+        long h1 = UrlFingerprint.of(url);
+        long h2 = SimHash.mix(h1) | 1;
+        for (int i = 0; i < this.hashes; i++) {
+            long bit = probe(h1, h2, i);
+            if ((this.bits.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return this.size.get();
+    }
+}
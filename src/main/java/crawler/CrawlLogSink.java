@@ -0,0 +1,13 @@
+package crawler;
+
+import model.LinkRecord;
+
+// Receives a LinkRecord for every processed page. Called concurrently from the crawl's workers, so
+// implementations must be thread-safe and shouldn't block.
+public interface CrawlLogSink {
+    void accept(LinkRecord r);
+
+    // Called once the crawl is over; flush whatever is still buffered
+    default void close() {
+    }
+}
@@ -0,0 +1,55 @@
+package crawler;
+
+import model.LinkRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Keeps only the most recent records of a crawl in a fixed ring, so memory stays bounded however long
+// the crawl runs. Writers claim a slot with one atomic increment; no locks.
+public class CrawlLogWindow implements CrawlLogSink {
+    private final AtomicReferenceArray<Entry> slots;
+    private final AtomicLong next = new AtomicLong();
+
+    // A record with the sequence number it was logged under, so a snapshot can tell a slot's current
+    // record from the one a lap earlier
+    private static final class Entry {
+        final long seq;
+        final LinkRecord record;
+
+        Entry(long seq, LinkRecord record) {
+            this.seq = seq;
+            this.record = record;
+        }
+    }
+
+    public CrawlLogWindow(int capacity) {
+        this.slots = new AtomicReferenceArray<>(Math.max(1, capacity));
+    }
+
+    @Override
+    public void accept(LinkRecord r) {
+        long i = this.next.getAndIncrement();
+        this.slots.set((int) (i % this.slots.length()), new Entry(i, r));
+    }
+
+    // How many records were logged in total, including the ones that fell out of the window
+    public long count() {
+        return this.next.get();
+    }
+
+    // The records currently in the window, oldest first. A slot a writer has claimed but not filled yet
+    // (still empty, or holding the record from a lap earlier) is skipped.
+    public List<LinkRecord> snapshot() {
+        long end = this.next.get();
+        long start = Math.max(0, end - this.slots.length());
+        List<LinkRecord> out = new ArrayList<>((int) (end - start));
+        for (long i = start; i < end; i++) {
+            Entry e = this.slots.get((int) (i % this.slots.length()));
+            if (e != null && e.seq == i) out.add(e.record);
+        }
+        return out;
+    }
+}
@@ -2,126 +2,423 @@ package crawler;
 
 import model.SentenceMatch;
 import model.CrawlConfig;
+import model.FetchEngine;
 import model.LinkRecord;
 import parser.HTMLParser;
 
-import java.net.URI;
-import java.net.URISyntaxException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
+// Runs a crawl as a pipeline of three stages, so that neither network waits nor parsing holds up the other:
+// - fetch: the frontier starts up to maxConcurrency fetches on the I/O pool (one thread per page for
+//   blocking fetches, a few callback threads for async ones)
+// - parse: fetched pages go to a pool with one thread per core that parses them, finds the matching
+//   sentences and picks the links to follow
+// - admission: a single thread queues those links and logs the page
+// Each hand-off goes through a bounded queue (Stage); when one is full the stage before it does the
+// work itself and slows down to match.
 public class CrawlManager {
     private final CrawlConfig config;
     private final HTMLParser parser;
-    private final ExecutorService executor;
-    private final Set<String> visited;
+    private final LinkScorer scorer;
+    private final UrlFilter urlFilter;
+    private final ExecutorService executor; // fetch stage
+    private final Stage parseStage;
+    private final Stage admissionStage;
+    private final ScheduledExecutorService timer;
+    private final Frontier frontier;
+    private final Fetcher fetcher;
+    private final VisitedSet visited;
     private final AtomicInteger activeTasks;
+    private final CompletableFuture<Void> done;
     private final Consumer<SentenceMatch> onMatch;
     private final AtomicInteger pagesClaimed;
     private final Consumer<Integer> onProgressUpdate;
-    private final List<LinkRecord> crawlLog;
+    private final CrawlLogWindow crawlLog;
+    private final List<CrawlLogSink> logSinks;
+    private final CrawlStateLog stateLog; // null unless config.getStateDirectory() is set
+    private final PageCache pageCache;    // null unless config.getPageCacheDirectory() is set
+    private final NearDuplicateIndex duplicates; // null when near-duplicate detection is off
+    private final CrawlMetrics metrics;
+    private final List<Consumer<CrawlMetrics.Snapshot>> metricsListeners;
+    private final CrawlPool pool;         // null when the crawl has threads of its own
+    private final List<ScheduledFuture<?>> periodic; // cancelled when the crawl is over
 
     public CrawlManager(CrawlConfig config, Consumer<SentenceMatch> onMatch, Consumer<Integer> onProgressUpdate) {
+        this(config, onMatch, onProgressUpdate, null, null);
+    }
+
+    // On threads and connections shared with other crawls, instead of a pool of its own; the pool stays
+    // open when the crawl is over
+    public CrawlManager(CrawlConfig config, Consumer<SentenceMatch> onMatch, Consumer<Integer> onProgressUpdate, CrawlPool pool) {
+        this(config, onMatch, onProgressUpdate, null, pool);
+    }
+
+    // With a given fetcher instead of the one for config.getFetchEngine(), e.g. to benchmark admission
+    // without any network I/O
+    CrawlManager(CrawlConfig config, Consumer<SentenceMatch> onMatch, Consumer<Integer> onProgressUpdate, Fetcher fetcher) {
+        this(config, onMatch, onProgressUpdate, fetcher, null);
+    }
+
+    private CrawlManager(CrawlConfig config, Consumer<SentenceMatch> onMatch, Consumer<Integer> onProgressUpdate,
+                         Fetcher fetcher, CrawlPool pool) {
         this.config = config;
-        this.parser = new HTMLParser(config.getTopic());
-        this.executor = Executors.newFixedThreadPool(10);
+        this.parser = new HTMLParser(config.getTopics());
+        this.scorer = new LinkScorer(this.parser.getMatcher());
+        this.urlFilter = UrlFilter.compile(config);
+        this.pool = pool;
+        this.periodic = new CopyOnWriteArrayList<>();
+        if (pool != null) {
+            this.executor = pool.executor();
+            this.fetcher = fetcher != null ? fetcher : pool.fetcher(config);
+        } else if (config.getFetchEngine() == FetchEngine.ASYNC) {
+            // threads only start requests and process responses; the I/O itself is non-blocking
+            this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            this.fetcher = fetcher != null ? fetcher : new AsyncFetcher(this.executor, config.getMaxBodyBytes());
+        } else {
+            this.executor = Executors.newFixedThreadPool(Math.max(1, config.getMaxConcurrency()));
+            this.fetcher = fetcher != null ? fetcher : new BlockingFetcher(config.getMaxBodyBytes());
+        }
+        int parseThreads = config.getParseThreads() > 0 ? config.getParseThreads() : Runtime.getRuntime().availableProcessors();
+        this.parseStage = pool != null ? pool.parseStage() : new Stage("crawl-parse", parseThreads, config.getParseQueueCapacity());
+        this.admissionStage = pool != null ? pool.admissionStage() : new Stage("crawl-admission", 1, config.getAdmissionQueueCapacity());
+        this.timer = pool != null ? pool.timer() : Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "crawl-frontier-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        this.metrics = new CrawlMetrics(config.getSeedUrl());
+        this.frontier = new Frontier(config, this.executor, this.timer, this.metrics, this::runTask);
         this.onMatch = onMatch;
-        this.visited = ConcurrentHashMap.newKeySet();
+        this.visited = createVisitedSet(config);
         this.activeTasks = new AtomicInteger(0);
+        this.done = new CompletableFuture<>();
         this.pagesClaimed = new AtomicInteger(0);
         this.onProgressUpdate = onProgressUpdate;
-        this.crawlLog = Collections.synchronizedList(new ArrayList<>());
+        this.crawlLog = new CrawlLogWindow(config.getCrawlLogWindow());
+        this.logSinks = new CopyOnWriteArrayList<>();
+        this.logSinks.add(this.crawlLog);
+        if (config.getCrawlLogFile() != null) {
+            try {
+                this.logSinks.add(new NdjsonCrawlLogSink(Paths.get(config.getCrawlLogFile())));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open crawl log " + config.getCrawlLogFile(), e);
+            }
+        }
+        configureKeepAlive(config.getMaxConcurrencyPerHost());
+        this.stateLog = openStateLog(config);
+        this.pageCache = openPageCache(config);
+        this.duplicates = config.getNearDuplicateDistance() < 0 ? null : new NearDuplicateIndex(config.getNearDuplicateDistance());
+        this.metrics.gauge(CrawlMetrics.QUEUED, this.frontier::queued);
+        this.metrics.gauge(CrawlMetrics.IN_FLIGHT, this.frontier::running);
+        this.metrics.gauge(CrawlMetrics.ACTIVE_TASKS, this.activeTasks::get);
+        this.metrics.gauge(CrawlMetrics.PAGES_CLAIMED, this.pagesClaimed::get);
+        this.metrics.gauge(CrawlMetrics.PARSE_QUEUED, this.parseStage::queued);
+        this.metrics.gauge(CrawlMetrics.PARSE_ACTIVE, this.parseStage::active);
+        this.metrics.gauge(CrawlMetrics.PARSE_INLINE, this.parseStage::inline);
+        this.metrics.gauge(CrawlMetrics.ADMISSION_QUEUED, this.admissionStage::queued);
+        this.metrics.gauge(CrawlMetrics.ADMISSION_INLINE, this.admissionStage::inline);
+        this.metricsListeners = new CopyOnWriteArrayList<>();
     }
 
-    // Normalize URLs for dedupe/logging
-    public static String normalizeUrl(String raw) {
-        if (raw == null) return null;
+    private static PageCache openPageCache(CrawlConfig config) {
+        if (config.getPageCacheDirectory() == null) return null;
         try {
-            URI u = new URI(raw).normalize(); //
-            String scheme = (u.getScheme() == null ? "http" : u.getScheme().toLowerCase());
-            String host = (u.getHost() == null ? "" : u.getHost().toLowerCase());
-
-            // drop default ports so the same page doesn't get treated as two different URLs
-            int port = u.getPort();
-            if ((scheme.equals("http") && port == 80) || (scheme.equals("https") && port == 443)) {
-                port = -1;
-            }
+            return new PageCache(Paths.get(config.getPageCacheDirectory()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open page cache in " + config.getPageCacheDirectory(), e);
+        }
+    }
+
+    private CrawlStateLog openStateLog(CrawlConfig config) {
+        if (config.getStateDirectory() == null) return null;
+        CrawlStateLog log;
+        try {
+            log = new CrawlStateLog(Paths.get(config.getStateDirectory()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open crawl state in " + config.getStateDirectory(), e);
+        }
+        schedule(log::checkpoint, Math.max(1, config.getCheckpointIntervalMillis()));
+        return log;
+    }
+
+    private void schedule(Runnable task, long intervalMillis) {
+        this.periodic.add(this.timer.scheduleAtFixedRate(task, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS));
+    }
 
-            String path = (u.getPath() == null || u.getPath().isEmpty()) ? "/" : u.getPath();
-            if (path.endsWith("/") && path.length() > 1) path = path.substring(0, path.length() - 1);
+    private static VisitedSet createVisitedSet(CrawlConfig config) {
+        // the seed plus up to maxLinksPerPage queued links from every page that gets fetched
+        long fetched = Math.max(0, config.getMaxPages()) + 1L;
+        int expected = (int) Math.min(Integer.MAX_VALUE, 1 + fetched * Math.max(1, config.getMaxLinksPerPage()));
+        switch (config.getVisitedSetType()) {
+            case FINGERPRINT:
+                return new FingerprintVisitedSet(expected);
+            case BLOOM:
+                return new BloomVisitedSet(expected, config.getBloomFalsePositiveRate());
+            default:
+                return new ExactVisitedSet();
+        }
+    }
 
-            URI cleaned = new URI(scheme, u.getUserInfo(), host, port, path, u.getQuery(), null);
-            return cleaned.toString();
-        } catch (URISyntaxException e) {
-            // fallback: strip fragment only
-            int hash = raw.indexOf('#');
-            return (hash >= 0) ? raw.substring(0, hash) : raw;
+    // HttpURLConnection (used by Jsoup) keeps idle connections in one JVM-wide keep-alive cache whose
+    // per-host size is read once from http.maxConnections, so size it to the per-host limit unless
+    // the user already set it. Has no effect once the first connection of the JVM has been opened.
+    private static void configureKeepAlive(int perHost) {
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", String.valueOf(Math.max(5, perHost)));
         }
     }
 
+    // Normalize URLs for dedupe/logging
+    public static String normalizeUrl(String raw) {
+        return UrlNormalizer.normalize(raw);
+    }
+
+    // The most recent records only (see CrawlConfig.setCrawlLogWindow)
     public List<LinkRecord> getCrawlLog() {
-        return this.crawlLog;
+        return this.crawlLog.snapshot();
+    }
+
+    // Every page logged so far, including the ones no longer in getCrawlLog()
+    public long getPagesLogged() {
+        return this.crawlLog.count();
+    }
+
+    // Extra destination for the crawl log; add before starting the crawl
+    public void addLogSink(CrawlLogSink sink) {
+        this.logSinks.add(sink);
+    }
+
+    public CrawlMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    // Called with a snapshot every config.getMetricsIntervalMillis() while the crawl runs, and once more
+    // when it is over; add before starting the crawl. Runs on the crawl's timer thread, so keep it short.
+    public void addMetricsListener(Consumer<CrawlMetrics.Snapshot> listener) {
+        this.metricsListeners.add(listener);
+    }
+
+    private void publishMetrics() {
+        if (this.metricsListeners.isEmpty()) return;
+        CrawlMetrics.Snapshot snapshot = this.metrics.snapshot();
+        for (Consumer<CrawlMetrics.Snapshot> listener : this.metricsListeners) {
+            try {
+                listener.accept(snapshot);
+            } catch (RuntimeException e) {
+                System.err.println("Error in metrics listener: " + e.getMessage());
+            }
+        }
+    }
+
+    // Which links the crawl follows, compiled from the config once
+    UrlFilter getUrlFilter() {
+        return this.urlFilter;
+    }
+
+    PageCache getPageCache() {
+        return this.pageCache;
+    }
+
+    NearDuplicateIndex getDuplicateIndex() {
+        return this.duplicates;
+    }
+
+    long fetchTimeoutMillis(String url) {
+        return this.frontier.timeoutMillis(url);
+    }
+
+    void fetched(String url, HostControl.Outcome outcome, int status, long latencyNanos, long retryAfterMillis) {
+        this.frontier.fetched(url, outcome, status, latencyNanos, retryAfterMillis);
     }
 
     void log(LinkRecord r) {
-        this.crawlLog.add(r);
+        for (CrawlLogSink sink : this.logSinks) sink.accept(r);
+        if (this.stateLog != null) this.stateLog.done(r);
     }
 
+    // Crawl and block until every page has been processed
     public void startCrawl() {
-        final String seedUrl = normalizeUrl(this.config.getSeedUrl());
-        this.visited.add(seedUrl);
+        try {
+            startCrawlAsync().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    // Start crawling from the seed (or from where a logged crawl stopped); the returned future completes
+    // as soon as the frontier drains
+    public CompletableFuture<Void> startCrawlAsync() {
+        this.metrics.start();
+        this.metrics.registerJmx();
+        long interval = this.config.getMetricsIntervalMillis();
+        if (interval > 0) schedule(this::publishMetrics, interval);
+
+        // held while the start-up tasks are queued, so tasks that finish meanwhile (e.g. every one of them,
+        // when a resumed crawl has no budget left) can't end the crawl before they are all in
+        this.activeTasks.incrementAndGet();
+        try {
+            if (this.stateLog != null) resume(this.stateLog.recovered());
+            final String seedUrl = normalizeUrl(this.config.getSeedUrl());
+            if (this.visited.add(seedUrl)) submitTask(seedUrl, null, 0, 0);
+        } finally {
+            taskFinished(); // ends the crawl here if nothing was queued, e.g. a negative depth limit
+        }
+        return this.done;
+    }
 
-        submitTask(seedUrl, null, 0);
-        waitForAllTasks();
-        this.executor.shutdown();
+    // Pages already done count against the budget again; URLs queued but never fetched go back to the
+    // frontier without being logged a second time
+    private void resume(CrawlStateLog.Recovered recovered) {
+        for (String url : recovered.admitted) this.visited.add(url);
+        int pages = 0;
+        for (LinkRecord r : recovered.done) {
+            for (CrawlLogSink sink : this.logSinks) sink.accept(r);
+            if (r.depth > 0) pages++;
+        }
+        this.pagesClaimed.set(pages);
+        for (FrontierEntry e : recovered.pending) {
+            if (e.depth <= this.config.getMaxDepth()) enqueue(e);
+        }
     }
 
-    // Submit a task for a specific URL/parent/depth
-    private void submitTask(String url, String parentUrl, int depth) {
+    // Queue a task for a specific URL/parent/depth; the frontier decides when it runs
+    private void submitTask(String url, String parentUrl, int depth, double score) {
         if (depth > this.config.getMaxDepth()) return;
 
+        FrontierEntry entry = new FrontierEntry(url, parentUrl, depth, score);
+        if (this.stateLog != null) this.stateLog.queued(entry);
+        enqueue(entry);
+    }
+
+    private void enqueue(FrontierEntry entry) {
         this.activeTasks.incrementAndGet();
-        this.executor.submit(() -> {
-            try {
-                CrawlTask task = new CrawlTask(url, parentUrl, depth, this, config, parser, onMatch);
-                task.run();
-            } finally {
-                activeTasks.decrementAndGet();
+        this.frontier.add(entry);
+    }
+
+    private CompletableFuture<Void> runTask(FrontierEntry entry) {
+        // The page budget is spent when a page is actually fetched, not when its link is found, so the
+        // frontier can hold more candidates than the budget and the best-scoring ones win
+        if (entry.depth > 0) {
+            int count = reservePage();
+            if (count < 0) {
+                this.activeTasks.addAndGet(-this.frontier.clear()); // nothing queued can run any more
+                taskFinished();
+                return CompletableFuture.completedFuture(null);
+            }
+            if (this.onProgressUpdate != null) {
+                onProgressUpdate.accept(count);
             }
+        }
+
+        CrawlTask task;
+        CompletableFuture<Void> fetched;
+        try {
+            task = new CrawlTask(entry.url, entry.parentUrl, entry.depth, this, config, parser, scorer, fetcher, onMatch,
+                    entry.retries + 1);
+            fetched = task.fetch();
+        } catch (RuntimeException e) {
+            taskFinished();
+            return CompletableFuture.failedFuture(e);
+        }
+        // the frontier's slot is free again as soon as the page is handed to the parse stage
+        return fetched.whenComplete((r, e) -> {
+            if (e != null) taskFinished();
+            else if (task.shouldRetry() && entry.retries < this.config.getMaxRetries()) retry(entry);
+            else this.parseStage.execute(() -> parse(task));
         });
     }
 
-    public synchronized boolean submitNewLink(String url, String parentUrl, int depth) {
-        if (depth > this.config.getMaxDepth()) return false;
+    // Back in the frontier, which holds it until the host's pause is over; it gets its page back from the
+    // budget and isn't logged until its last attempt
+    private void retry(FrontierEntry entry) {
+        this.metrics.count(CrawlMetrics.FETCH_RETRIED);
+        if (entry.depth > 0) this.pagesClaimed.decrementAndGet();
+        enqueue(new FrontierEntry(entry.url, entry.parentUrl, entry.depth, entry.score, entry.retries + 1));
+        taskFinished();
+    }
 
-        String norm = normalizeUrl(url);
-        if (this.visited.add(norm)) {
-            int count = this.pagesClaimed.incrementAndGet();
-            if (count <= this.config.getMaxPages()) {
-                if (this.onProgressUpdate != null) {
-                    onProgressUpdate.accept(count);
+    private void parse(CrawlTask task) {
+        try {
+            task.process();
+        } finally {
+            this.admissionStage.execute(() -> {
+                try {
+                    task.admitLinks();
+                } finally {
+                    taskFinished();
                 }
-                submitTask(norm, parentUrl == null ? null : normalizeUrl(parentUrl), depth);
-                return true;
-            } else {
-                this.visited.remove(norm);
-                this.pagesClaimed.decrementAndGet();
-                return false;
-            }
+            });
         }
-        return false;
     }
 
-    private void waitForAllTasks() {
-        while (this.activeTasks.get() > 0) {
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
-            }
+    // A task only finishes after queueing the links it found, so reaching zero means the crawl is over
+    private void taskFinished() {
+        if (this.activeTasks.decrementAndGet() == 0) finish();
+    }
+
+    private void finish() {
+        this.fetcher.close();
+        for (ScheduledFuture<?> f : this.periodic) f.cancel(false);
+        if (this.pool == null) {
+            this.executor.shutdown();
+            this.parseStage.shutdown();
+            this.admissionStage.shutdown();
+            this.timer.shutdown();
+        }
+        if (this.stateLog != null) this.stateLog.close();
+        for (CrawlLogSink sink : this.logSinks) sink.close();
+        publishMetrics();
+        this.metrics.unregisterJmx();
+        this.done.complete(null);
+    }
+
+    // Budget reservation with CAS; returns the new page count, or -1 once maxPages pages have been claimed
+    private int reservePage() {
+        int count;
+        do {
+            count = this.pagesClaimed.get();
+            if (count >= this.config.getMaxPages()) return -1;
+        } while (!this.pagesClaimed.compareAndSet(count, count + 1));
+        return count + 1;
+    }
+
+    public boolean submitNewLink(String url, String parentUrl, int depth) {
+        return submitNewLink(url, parentUrl, depth, 0);
+    }
+
+    // Lock-free admission: normalization runs on the caller's thread and dedupe is a single atomic add
+    // on the visited set. The link is queued with its score; budget is only claimed when it is fetched.
+    public boolean submitNewLink(String url, String parentUrl, int depth, double score) {
+        long start = System.nanoTime();
+        boolean admitted = admit(url, parentUrl, depth, score);
+        this.metrics.record(CrawlMetrics.ADMISSION, System.nanoTime() - start);
+        this.metrics.count(admitted ? CrawlMetrics.LINKS_ADMITTED : CrawlMetrics.LINKS_REJECTED);
+        return admitted;
+    }
+
+    private boolean admit(String url, String parentUrl, int depth, double score) {
+        if (depth > this.config.getMaxDepth()) return false;
+        boolean spent = this.pagesClaimed.get() >= this.config.getMaxPages();
+        if (spent && this.stateLog == null) return false; // budget already spent
+
+        String norm = normalizeUrl(url);
+        if (!this.visited.add(norm)) return false;
+
+        if (spent) {
+            // its parent is logged as done, so this is the only record of the link a run with a bigger
+            // budget can pick up again
+            this.stateLog.queued(new FrontierEntry(norm, UrlNormalizer.normalizeCached(parentUrl), depth, score));
+            return false;
         }
+        submitTask(norm, UrlNormalizer.normalizeCached(parentUrl), depth, score);
+        return true;
     }
 }
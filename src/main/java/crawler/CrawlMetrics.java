@@ -0,0 +1,274 @@
+package crawler;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Counters, latency histograms, gauges, per-host error rates and adaptive host limits for one crawl. Workers record into
+// LongAdders and lock-free histograms, so recording never makes threads wait on each other. snapshot()
+// reads everything at once for the periodic listeners and the GUI; the same numbers are on JMX.
+public class CrawlMetrics implements CrawlMetricsMXBean {
+    // Counters
+    public static final String PAGES_FETCHED = "pages.fetched";       // GET responses, any status
+    public static final String PAGES_FAILED = "pages.failed";         // error status or no response at all
+    public static final String PAGES_NOT_MODIFIED = "pages.notModified";
+    public static final String PAGES_DUPLICATE = "pages.duplicate";
+    public static final String PAGES_TRUNCATED = "pages.truncated";
+    public static final String BYTES_FETCHED = "bytes.fetched";
+    public static final String MATCHES = "matches";
+    public static final String LINKS_ADMITTED = "links.admitted";
+    public static final String LINKS_REJECTED = "links.rejected";     // already seen, too deep or over budget
+    public static final String FETCH_THROTTLED = "fetch.throttled";   // 429 or 503 answers
+    public static final String FETCH_TIMEOUTS = "fetch.timeouts";
+    public static final String FETCH_RETRIED = "fetch.retried";       // pages queued again after a 429/503 or timeout
+    public static final String HOST_PAUSES = "host.pauses";           // hosts held back for Retry-After or backoff
+    public static final String HOST_LIMIT_INCREASES = "host.limit.increases";
+    public static final String HOST_LIMIT_DECREASES = "host.limit.decreases";
+
+    // Latency histograms
+    public static final String FETCH_HEAD = "fetch.head";
+    public static final String FETCH_HEADERS = "fetch.headers"; // GET sent until response headers: DNS, connect, server time
+    public static final String FETCH_GET = "fetch.get";         // GET sent until the body is in
+    public static final String PARSE = "parse";                 // DOM build or streaming extraction
+    public static final String MATCH = "match";                 // sentence matching
+    public static final String ADMISSION = "admission";         // submitNewLink, per link
+
+    // Gauges
+    public static final String QUEUED = "frontier.queued";
+    public static final String IN_FLIGHT = "frontier.inFlight";
+    public static final String ACTIVE_TASKS = "tasks.active"; // queued or in flight
+    public static final String PAGES_CLAIMED = "pages.claimed";
+    public static final String PARSE_QUEUED = "stage.parse.queued";         // fetched pages waiting for a parse thread
+    public static final String PARSE_ACTIVE = "stage.parse.active";
+    public static final String PARSE_INLINE = "stage.parse.inline";         // parsed on the fetch thread, queue full
+    public static final String ADMISSION_QUEUED = "stage.admission.queued"; // parsed pages waiting to queue links
+    public static final String ADMISSION_INLINE = "stage.admission.inline";
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private final String seedUrl;
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<String, HostCounts> hosts = new ConcurrentHashMap<>();
+    private final Map<String, HostLimits> hostLimits = new ConcurrentHashMap<>();
+    private volatile long startNanos = System.nanoTime();
+    private ObjectName jmxName;
+
+    private static class HostCounts {
+        final LongAdder requests = new LongAdder();
+        final LongAdder errors = new LongAdder();
+    }
+
+    // Requests and failures for one host
+    public static class HostErrors {
+        public final long requests;
+        public final long errors;
+
+        HostErrors(long requests, long errors) {
+            this.requests = requests;
+            this.errors = errors;
+        }
+
+        public double rate() {
+            return this.requests == 0 ? 0 : this.errors / (double) this.requests;
+        }
+    }
+
+    // Where the adaptive limits of one host stood after its latest response (see HostControl)
+    public static class HostLimits {
+        public final int concurrency;
+        public final long timeoutMillis;
+        public final double p50Millis;   // recent latency until the response headers
+        public final double p95Millis;
+        public final long pausedMillis;  // left of a Retry-After or backoff pause, 0 if none
+
+        public HostLimits(int concurrency, long timeoutMillis, double p50Millis, double p95Millis, long pausedMillis) {
+            this.concurrency = concurrency;
+            this.timeoutMillis = timeoutMillis;
+            this.p50Millis = p50Millis;
+            this.p95Millis = p95Millis;
+            this.pausedMillis = pausedMillis;
+        }
+    }
+
+    // Everything at one point in time; maps are sorted by name
+    public static class Snapshot {
+        public final long elapsedMillis;
+        public final Map<String, Long> counters;
+        public final Map<String, Long> gauges;
+        public final Map<String, LatencyHistogram.Summary> latencies;
+        public final Map<String, HostErrors> hosts;
+        public final Map<String, HostLimits> hostLimits;
+
+        Snapshot(long elapsedMillis, Map<String, Long> counters, Map<String, Long> gauges,
+                 Map<String, LatencyHistogram.Summary> latencies, Map<String, HostErrors> hosts,
+                 Map<String, HostLimits> hostLimits) {
+            this.elapsedMillis = elapsedMillis;
+            this.counters = counters;
+            this.gauges = gauges;
+            this.latencies = latencies;
+            this.hosts = hosts;
+            this.hostLimits = hostLimits;
+        }
+
+        public long counter(String name) {
+            return this.counters.getOrDefault(name, 0L);
+        }
+
+        public long gauge(String name) {
+            return this.gauges.getOrDefault(name, 0L);
+        }
+
+        // Empty summary if nothing was recorded under that name
+        public LatencyHistogram.Summary latency(String name) {
+            LatencyHistogram.Summary s = this.latencies.get(name);
+            return s != null ? s : new LatencyHistogram.Summary(0, 0, 0, 0, 0, 0);
+        }
+
+        public double pagesPerSecond() {
+            return this.elapsedMillis == 0 ? 0 : counter(PAGES_FETCHED) * 1000.0 / this.elapsedMillis;
+        }
+    }
+
+    public CrawlMetrics(String seedUrl) {
+        this.seedUrl = seedUrl;
+    }
+
+    void start() {
+        this.startNanos = System.nanoTime();
+    }
+
+    public void count(String name) {
+        count(name, 1);
+    }
+
+    public void count(String name, long n) {
+        this.counters.computeIfAbsent(name, k -> new LongAdder()).add(n);
+    }
+
+    public void record(String name, long nanos) {
+        this.latencies.computeIfAbsent(name, k -> new LatencyHistogram()).record(nanos);
+    }
+
+    public void gauge(String name, LongSupplier value) {
+        this.gauges.put(name, value);
+    }
+
+    public void hostResult(String host, boolean error) {
+        HostCounts h = this.hosts.computeIfAbsent(host, k -> new HostCounts());
+        h.requests.increment();
+        if (error) h.errors.increment();
+    }
+
+    public void hostLimits(String host, HostLimits limits) {
+        this.hostLimits.put(host, limits);
+    }
+
+    public Snapshot snapshot() {
+        Map<String, Long> counters = new TreeMap<>();
+        this.counters.forEach((k, v) -> counters.put(k, v.sum()));
+        Map<String, Long> gauges = new TreeMap<>();
+        this.gauges.forEach((k, v) -> gauges.put(k, v.getAsLong()));
+        Map<String, LatencyHistogram.Summary> latencies = new TreeMap<>();
+        this.latencies.forEach((k, v) -> latencies.put(k, v.summary()));
+        Map<String, HostErrors> hosts = new TreeMap<>();
+        this.hosts.forEach((k, v) -> hosts.put(k, new HostErrors(v.requests.sum(), v.errors.sum())));
+        Map<String, HostLimits> hostLimits = new TreeMap<>(this.hostLimits);
+        return new Snapshot(getElapsedMillis(), Collections.unmodifiableMap(counters), Collections.unmodifiableMap(gauges),
+                Collections.unmodifiableMap(latencies), Collections.unmodifiableMap(hosts),
+                Collections.unmodifiableMap(hostLimits));
+    }
+
+    // Shows up as crawler:type=CrawlMetrics,name=<n>; failures are reported and otherwise ignored
+    void registerJmx() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("crawler:type=CrawlMetrics,name=" + NEXT_ID.incrementAndGet());
+            server.registerMBean(this, name);
+            this.jmxName = name;
+        } catch (JMException e) {
+            System.err.println("Error registering crawl metrics with JMX: " + e.getMessage());
+        }
+    }
+
+    void unregisterJmx() {
+        if (this.jmxName == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.jmxName);
+        } catch (JMException e) {
+            System.err.println("Error unregistering crawl metrics from JMX: " + e.getMessage());
+        }
+        this.jmxName = null;
+    }
+
+    @Override
+    public String getSeedUrl() {
+        return this.seedUrl;
+    }
+
+    @Override
+    public long getElapsedMillis() {
+        return (System.nanoTime() - this.startNanos) / 1_000_000;
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        return snapshot().counters;
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        return snapshot().gauges;
+    }
+
+    @Override
+    public Map<String, Long> getLatencyCounts() {
+        Map<String, Long> out = new TreeMap<>();
+        this.latencies.forEach((k, v) -> out.put(k, v.count()));
+        return out;
+    }
+
+    @Override
+    public Map<String, Double> getLatencyP50Millis() {
+        Map<String, Double> out = new TreeMap<>();
+        this.latencies.forEach((k, v) -> out.put(k, v.percentile(0.50) / 1e6));
+        return out;
+    }
+
+    @Override
+    public Map<String, Double> getLatencyP99Millis() {
+        Map<String, Double> out = new TreeMap<>();
+        this.latencies.forEach((k, v) -> out.put(k, v.percentile(0.99) / 1e6));
+        return out;
+    }
+
+    @Override
+    public Map<String, Double> getHostErrorRates() {
+        Map<String, Double> out = new TreeMap<>();
+        this.hosts.forEach((k, v) -> out.put(k, new HostErrors(v.requests.sum(), v.errors.sum()).rate()));
+        return out;
+    }
+
+    @Override
+    public Map<String, Integer> getHostConcurrencyLimits() {
+        Map<String, Integer> out = new TreeMap<>();
+        this.hostLimits.forEach((k, v) -> out.put(k, v.concurrency));
+        return out;
+    }
+
+    @Override
+    public Map<String, Long> getHostTimeoutMillis() {
+        Map<String, Long> out = new TreeMap<>();
+        this.hostLimits.forEach((k, v) -> out.put(k, v.timeoutMillis));
+        return out;
+    }
+}
@@ -0,0 +1,26 @@
+package crawler;
+
+import java.util.Map;
+
+// What a crawl's CrawlMetrics show over JMX (e.g. in JConsole under "crawler")
+public interface CrawlMetricsMXBean {
+    String getSeedUrl();
+
+    long getElapsedMillis();
+
+    Map<String, Long> getCounters();
+
+    Map<String, Long> getGauges();
+
+    Map<String, Long> getLatencyCounts();
+
+    Map<String, Double> getLatencyP50Millis();
+
+    Map<String, Double> getLatencyP99Millis();
+
+    Map<String, Double> getHostErrorRates();
+
+    Map<String, Integer> getHostConcurrencyLimits();
+
+    Map<String, Long> getHostTimeoutMillis();
+}
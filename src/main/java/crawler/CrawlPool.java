@@ -0,0 +1,152 @@
+package crawler;
+
+import model.CrawlConfig;
+import model.FetchEngine;
+
+import java.net.http.HttpClient;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Worker threads, a timer and HTTP connections shared by any number of crawls in one JVM. Each crawl
+// keeps its own frontier and limits; the pool bounds what they use together. Fetches run on the workers,
+// and fetched pages of all crawls go through one parse stage and one admission stage (see CrawlManager).
+// A blocking fetch holds one of the workers, so at most that many are in flight. Async fetches all go
+// through one HttpClient (one connection pool), and at most maxConnections of them are in flight across
+// all crawls; the rest wait their turn in arrival order.
+public class CrawlPool implements AutoCloseable {
+    private final ExecutorService executor;
+    private final ScheduledExecutorService timer;
+    private final Stage parseStage;
+    private final Stage admissionStage;
+    private final int maxConnections;
+    private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+    private int connections = 0;
+    private HttpClient client; // created for the first async crawl
+
+    public CrawlPool(int workers, int maxConnections) {
+        this(workers, Runtime.getRuntime().availableProcessors(), maxConnections);
+    }
+
+    public CrawlPool(int workers, int parseThreads, int maxConnections) {
+        AtomicInteger ids = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, workers), r -> {
+            Thread t = new Thread(r, "crawl-worker-" + ids.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "crawl-pool-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        this.maxConnections = Math.max(1, maxConnections);
+        this.parseStage = new Stage("crawl-parse", parseThreads, 4 * Math.max(1, parseThreads));
+        this.admissionStage = new Stage("crawl-admission", 1, 1024);
+    }
+
+    ExecutorService executor() {
+        return this.executor;
+    }
+
+    ScheduledExecutorService timer() {
+        return this.timer;
+    }
+
+    Stage parseStage() {
+        return this.parseStage;
+    }
+
+    Stage admissionStage() {
+        return this.admissionStage;
+    }
+
+    // A fetcher for one crawl, with that crawl's engine and body limit
+    Fetcher fetcher(CrawlConfig config) {
+        if (config.getFetchEngine() != FetchEngine.ASYNC) return new BlockingFetcher(config.getMaxBodyBytes());
+        return new LimitedFetcher(new AsyncFetcher(client(), config.getMaxBodyBytes()));
+    }
+
+    private synchronized HttpClient client() {
+        if (this.client == null) this.client = AsyncFetcher.newClient(this.executor);
+        return this.client;
+    }
+
+    // Runs start now if a connection is free, otherwise once one is released
+    private void acquire(Runnable start) {
+        synchronized (this) {
+            if (this.connections >= this.maxConnections) {
+                this.waiting.add(start);
+                return;
+            }
+            this.connections++;
+        }
+        start.run();
+    }
+
+    // Hands the connection to the next waiting fetch, on a worker so a chain of fetches that fail
+    // straight away doesn't recurse
+    private void release() {
+        Runnable next;
+        synchronized (this) {
+            next = this.waiting.poll();
+            if (next == null) this.connections--;
+        }
+        if (next != null) this.executor.execute(next);
+    }
+
+    // Stop the shared threads; only once every crawl using the pool is done
+    @Override
+    public void close() {
+        this.executor.shutdown();
+        this.parseStage.shutdown();
+        this.admissionStage.shutdown();
+        this.timer.shutdown();
+    }
+
+    // Puts every request of one crawl's fetcher through the pool's connection limit
+    private class LimitedFetcher implements Fetcher {
+        private final Fetcher fetcher;
+
+        LimitedFetcher(Fetcher fetcher) {
+            this.fetcher = fetcher;
+        }
+
+        @Override
+        public CompletableFuture<FetchResult> get(String url, String etag, String lastModified, long timeoutMillis) {
+            return limited(() -> this.fetcher.get(url, etag, lastModified, timeoutMillis));
+        }
+
+        @Override
+        public CompletableFuture<FetchResult> head(String url, long timeoutMillis) {
+            return limited(() -> this.fetcher.head(url, timeoutMillis));
+        }
+
+        @Override
+        public void close() {
+            this.fetcher.close();
+        }
+
+        private CompletableFuture<FetchResult> limited(Supplier<CompletableFuture<FetchResult>> request) {
+            CompletableFuture<FetchResult> result = new CompletableFuture<>();
+            acquire(() -> {
+                CompletableFuture<FetchResult> f;
+                try {
+                    f = request.get();
+                } catch (RuntimeException e) {
+                    f = CompletableFuture.failedFuture(e);
+                }
+                f.whenComplete((r, e) -> {
+                    release();
+                    if (e != null) result.completeExceptionally(e);
+                    else result.complete(r);
+                });
+            });
+            return result;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package crawler;
+
+import model.LinkRecord;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+// Append-only write-ahead log of a crawl, so it can be resumed (or extended with a bigger maxPages)
+// after the JVM dies without refetching completed pages. Every admitted URL is logged as QUEUED and
+// every processed page as DONE with its LinkRecord; replaying the file gives back the visited URLs,
+// the crawl log and the frontier (queued but not done).
+//
+// Records are framed as [payload length][type][payload][crc32] and appended through a buffer that is
+// written and forced to disk on every checkpoint. A torn record at the end of the file (crash during
+// a write) is detected by its length or checksum and cut off when the log is reopened.
+class CrawlStateLog {
+    static final String FILE_NAME = "crawl-state.log";
+    private static final byte QUEUED = 'Q';
+    private static final byte DONE = 'D';
+
+    private final Path file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+    private final Recovered recovered;
+    private boolean failed = false;
+
+    // What a previous run of the same crawl left behind
+    static class Recovered {
+        final Set<String> admitted = new HashSet<>();
+        final List<LinkRecord> done = new ArrayList<>();
+        final List<FrontierEntry> pending = new ArrayList<>();
+    }
+
+    CrawlStateLog(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.file = directory.resolve(FILE_NAME);
+        this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.recovered = replay();
+    }
+
+    Recovered recovered() {
+        return this.recovered;
+    }
+
+    private Recovered replay() throws IOException {
+        Map<String, FrontierEntry> queued = new LinkedHashMap<>();
+        Set<String> doneUrls = new HashSet<>();
+        Recovered r = new Recovered();
+
+        long size = this.channel.size();
+        long valid = 0;
+        CRC32 crc = new CRC32();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(this.channel.position(0)), 1 << 16));
+        while (size - valid >= 9) {
+            int length = in.readInt();
+            if (length < 0 || size - valid - 9 < length) break;
+            byte type = in.readByte();
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            int storedCrc = in.readInt();
+
+            crc.reset();
+            crc.update(type);
+            crc.update(bytes);
+            if ((int) crc.getValue() != storedCrc) break;
+
+            ByteBuffer payload = ByteBuffer.wrap(bytes);
+            if (type == QUEUED) {
+                FrontierEntry e = new FrontierEntry(getString(payload), getString(payload), payload.getInt(), payload.getDouble());
+                queued.putIfAbsent(e.url, e);
+                r.admitted.add(e.url);
+            } else if (type == DONE) {
+                // fields added later are missing from older records
+                LinkRecord rec = new LinkRecord(getString(payload), getString(payload), payload.getInt(),
+                        payload.getInt(), payload.getLong(), getString(payload),
+                        payload.hasRemaining() ? getString(payload) : null,
+                        payload.hasRemaining() && payload.get() != 0,
+                        payload.remaining() >= 4 ? payload.getInt() : 1);
+                r.done.add(rec);
+                doneUrls.add(rec.url);
+            } else {
+                break;
+            }
+            valid += 9L + length;
+        }
+
+        for (FrontierEntry e : queued.values()) {
+            if (!doneUrls.contains(e.url)) r.pending.add(e);
+        }
+
+        // drop a torn tail so new records are appended right after the last good one
+        if (valid < size) this.channel.truncate(valid);
+        this.channel.position(valid);
+        return r;
+    }
+
+    void queued(FrontierEntry e) {
+        byte[] url = bytes(e.url);
+        byte[] parent = bytes(e.parentUrl);
+        ByteBuffer payload = ByteBuffer.allocate(strLen(url) + strLen(parent) + 4 + 8);
+        putString(payload, url);
+        putString(payload, parent);
+        payload.putInt(e.depth);
+        payload.putDouble(e.score);
+        append(QUEUED, payload);
+    }
+
+    void done(LinkRecord r) {
+        byte[] url = bytes(r.url);
+        byte[] parent = bytes(r.parentUrl);
+        byte[] type = bytes(r.contentType);
+        byte[] duplicateOf = bytes(r.duplicateOf);
+        ByteBuffer payload = ByteBuffer.allocate(strLen(url) + strLen(parent) + strLen(type) + strLen(duplicateOf) + 4 + 4 + 8 + 1 + 4);
+        putString(payload, url);
+        putString(payload, parent);
+        payload.putInt(r.depth);
+        payload.putInt(r.status);
+        payload.putLong(r.sizeBytes);
+        putString(payload, type);
+        putString(payload, duplicateOf);
+        payload.put((byte) (r.truncated ? 1 : 0));
+        payload.putInt(r.attempts);
+        append(DONE, payload);
+    }
+
+    private synchronized void append(byte type, ByteBuffer payload) {
+        if (this.failed) return;
+        payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload.duplicate());
+
+        int length = payload.remaining();
+        try {
+            if (this.buffer.remaining() < length + 9) writeBuffer();
+            if (this.buffer.remaining() < length + 9) {
+                // bigger than the whole buffer: write it straight through
+                ByteBuffer big = ByteBuffer.allocate(length + 9);
+                big.putInt(length).put(type).put(payload).putInt((int) crc.getValue()).flip();
+                while (big.hasRemaining()) this.channel.write(big);
+                return;
+            }
+            this.buffer.putInt(length).put(type).put(payload).putInt((int) crc.getValue());
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    // Make everything appended so far durable
+    synchronized void checkpoint() {
+        if (this.failed) return;
+        try {
+            writeBuffer();
+            this.channel.force(false);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    synchronized void close() {
+        checkpoint();
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing crawl state " + this.file + ": " + e.getMessage());
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) this.channel.write(this.buffer);
+        this.buffer.clear();
+    }
+
+    // A crawl shouldn't die because its state can't be saved; report once and stop logging
+    private void fail(IOException e) {
+        this.failed = true;
+        System.err.println("Error writing crawl state " + this.file + ", no longer saving it: " + e.getMessage());
+    }
+
+    private static byte[] bytes(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int strLen(byte[] b) {
+        return 4 + (b == null ? 0 : b.length);
+    }
+
+    private static void putString(ByteBuffer buf, byte[] b) {
+        if (b == null) {
+            buf.putInt(-1);
+        } else {
+            buf.putInt(b.length).put(b);
+        }
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int len = buf.getInt();
+        if (len < 0) return null;
+        byte[] b = new byte[len];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
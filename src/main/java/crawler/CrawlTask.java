@@ -1,137 +1,295 @@
 package crawler;
 
 import model.CrawlConfig;
+import model.ExtractionMode;
 import model.SentenceMatch;
 import model.LinkRecord;
 import parser.HTMLParser;
+import parser.SimHash;
+import parser.StreamingHtmlExtractor;
 
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 
 import java.io.IOException;
 import java.net.*;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.Consumer;
 
-public class CrawlTask implements Runnable {
+public class CrawlTask {
     private final String url;
     private final String parentUrl;
     private final int depth;
     private final CrawlManager manager;
     private final CrawlConfig config;
     private final HTMLParser parser;
+    private final LinkScorer scorer;
+    private final Fetcher fetcher;
     private final Consumer<SentenceMatch> onMatch;
+    private final int attempts;
 
-    public CrawlTask(String url, String parentUrl, int depth, CrawlManager manager, CrawlConfig config, HTMLParser parser, Consumer<SentenceMatch> onMatch) {
-        this.url = CrawlManager.normalizeUrl(url);
-        this.parentUrl = parentUrl == null ? null : CrawlManager.normalizeUrl(parentUrl);
+    // Handed from one stage to the next (see CrawlManager); each stage runs after the one before it is done
+    private FetchResult meta;           // where the log record's metadata comes from
+    private FetchResult page;
+    private PageCache.Entry cached;
+    private Throwable error;
+    private List<Candidate> links;      // null unless links are to be followed
+    private int matchCount;
+    private boolean fromCache;
+    private LinkRecord record;
+    private boolean retry;              // the host throttled or timed out; worth trying again later
+
+    // One page, driven through its stages by CrawlManager; attempts counts this one: 2 for the first retry
+    CrawlTask(String url, String parentUrl, int depth, CrawlManager manager, CrawlConfig config, HTMLParser parser,
+              LinkScorer scorer, Fetcher fetcher, Consumer<SentenceMatch> onMatch, int attempts) {
+        this.url = UrlNormalizer.normalizeCached(url);
+        this.parentUrl = UrlNormalizer.normalizeCached(parentUrl);
         this.depth = depth;
         this.manager = manager;
         this.config = config;
         this.parser = parser;
+        this.scorer = scorer;
+        this.fetcher = fetcher;
         this.onMatch = onMatch;
+        this.attempts = attempts;
     }
 
-    // Helper class to encapsulate link metadata
-    private static class HeadMeta {
-        final int status;
-        final long len;
-        final String type;
+    // A followable link on a page, with the part of its score that doesn't depend on where the page sits
+    static class Candidate {
+        final String url;
+        final double linkScore;
 
-        HeadMeta(int status, long len, String type) {
-            this.status = status;
-            this.len = len;
-            this.type = type;
+        Candidate(String url, double linkScore) {
+            this.url = url;
+            this.linkScore = linkScore;
         }
     }
 
-    // Make HEAD request to conveniently get status/length/content-type
-    private static HeadMeta head(String urlStr) {
-        try {
-            HttpURLConnection c = (HttpURLConnection) new URL(urlStr).openConnection();
-            c.setInstanceFollowRedirects(true);
-            c.setRequestMethod("HEAD");
-            c.setConnectTimeout(5000);
-            c.setReadTimeout(5000);
-            c.setRequestProperty("Accept-Encoding", "identity"); // real Content-Length
-            c.connect();
-            HeadMeta m = new HeadMeta(c.getResponseCode(), c.getContentLengthLong(), c.getContentType());
-            c.disconnect();
-            return m;
-        } catch (Exception e) {
-            return new HeadMeta(-1, -1, null);
+    // Every link on the page the crawl's UrlFilter lets through, in page order, as the filter rewrites it
+    private List<Candidate> candidates(Document doc) {
+        UrlFilter filter = this.manager.getUrlFilter();
+        List<Candidate> candidates = new ArrayList<>();
+        for (Element link : doc.select("a[href]")) {
+            String url = filter.apply(link.absUrl("href"));
+            if (url != null) {
+                candidates.add(new Candidate(url, this.scorer.linkScore(link, url)));
+            }
         }
+        return candidates;
     }
 
-    private static String hostKey(String h) {
-        if (h == null) return "";
-        h = h.toLowerCase();
-        return h.startsWith("www.") ? h.substring(4) : h;
+    private List<Candidate> candidates(List<StreamingHtmlExtractor.Anchor> anchors) {
+        UrlFilter filter = this.manager.getUrlFilter();
+        List<Candidate> candidates = new ArrayList<>();
+        for (StreamingHtmlExtractor.Anchor a : anchors) {
+            String url = filter.apply(a.url);
+            if (url != null) {
+                candidates.add(new Candidate(url, this.scorer.linkScore(a.text, a.context, url)));
+            }
+        }
+        return candidates;
     }
 
-    // Helper to ensure we only use links with http/https, same host as the seed, and skip non-text
-    private boolean shouldFollow(String targetUrl) {
-        if (targetUrl == null) return false;
-        String t = targetUrl.trim();
-        if (t.isEmpty() || t.startsWith("javascript:") || t.startsWith("mailto:")) return false;
+    // Queue the best-scoring links, up to the configured per-page cap
+    private void followLinks(List<Candidate> links, int matchCount, boolean fromCache) {
+        List<Candidate> candidates = new ArrayList<>(links);
+        candidates.sort((a, b) -> Double.compare(b.linkScore, a.linkScore)); // stable, so ties keep page order
 
-        try {
-            URI base = new URI(this.config.getSeedUrl());
-            URI u = new URI(t);
+        double pageRelevance = LinkScorer.pageRelevance(matchCount);
+        int followed = 0;
+        int maxLinks = this.config.getMaxLinksPerPage();
+        UrlFilter filter = this.manager.getUrlFilter();
+        for (Candidate c : candidates) {
+            if (followed >= maxLinks) break;
+            String url = fromCache ? filter.apply(c.url) : c.url; // filtered under the config of the crawl that cached them
+            if (url == null) continue;
+            double score = LinkScorer.score(c.linkScore, this.depth + 1, pageRelevance);
+            // submitNewLink normalizes, no need to do it here as well
+            if (this.manager.submitNewLink(url, this.url, this.depth + 1, score)) followed++;
+        }
+    }
 
-            String scheme = (u.getScheme() == null ? "http" : u.getScheme().toLowerCase());
-            if (!scheme.equals("http") && !scheme.equals("https")) return false;
+    // I/O stage: fetch the page (after the opt-in HEAD request). With a page cache the GET is conditional
+    // on what the cache holds for this URL. Requests time out after what the host's limits allow right now.
+    // Fetch errors are kept for process(), not thrown.
+    CompletableFuture<Void> fetch() {
+        CrawlMetrics metrics = this.manager.getMetrics();
+        long timeoutMillis = this.manager.fetchTimeoutMillis(this.url);
+        long headStart = System.nanoTime();
+        CompletableFuture<FetchResult> head = this.config.isHeadRequest()
+                ? this.fetcher.head(this.url, timeoutMillis)
+                        .whenComplete((r, e) -> metrics.record(CrawlMetrics.FETCH_HEAD, System.nanoTime() - headStart))
+                        .exceptionally(e -> null)
+                : CompletableFuture.completedFuture(null);
 
-            if (!hostKey(u.getHost()).equals(hostKey(base.getHost()))) return false;
+        PageCache cache = this.manager.getPageCache();
+        PageCache.Validators validators = cache == null ? null : cache.loadValidators(this.url);
+        String etag = validators == null ? null : validators.etag;
+        String lastModified = validators == null ? null : validators.lastModified;
 
-            String path = u.getPath() == null ? "" : u.getPath().toLowerCase();
-            if (path.matches(".*\\.(?:jpg|jpeg|png|gif|svg|ico|css|mp3|mp4|mov)$"))
-                return false;
+        return head.thenCompose(meta -> {
+            long start = System.nanoTime();
+            return this.fetcher.get(this.url, etag, lastModified, timeoutMillis)
+                .handle((page, error) -> {
+                    recordFetch(metrics, page, error, System.nanoTime() - start);
+                    PageCache.Entry cached = null;
+                    if (page != null && page.status == HttpURLConnection.HTTP_NOT_MODIFIED && validators != null) {
+                        cached = cache.load(this.url); // the rest of the entry is only needed now
+                        if (cached != null) page = cached.asResult();
+                    }
+                    this.meta = meta != null ? meta : page;
+                    this.page = page;
+                    this.cached = cached;
+                    this.error = error;
+                    return null;
+                });
+        });
+    }
 
-            return true;
-        } catch (URISyntaxException e) {
-            return false;
+    private void recordFetch(CrawlMetrics metrics, FetchResult page, Throwable error, long nanos) {
+        boolean failed = error != null || page.status >= 400;
+        metrics.record(CrawlMetrics.FETCH_GET, nanos);
+        if (page != null && page.headerNanos >= 0) metrics.record(CrawlMetrics.FETCH_HEADERS, page.headerNanos);
+        if (page != null) metrics.count(CrawlMetrics.PAGES_FETCHED);
+        if (failed) metrics.count(CrawlMetrics.PAGES_FAILED);
+        if (page != null && page.status == HttpURLConnection.HTTP_NOT_MODIFIED) metrics.count(CrawlMetrics.PAGES_NOT_MODIFIED);
+        if (page != null && page.body != null) metrics.count(CrawlMetrics.BYTES_FETCHED, page.body.length);
+        if (page != null && page.truncated) metrics.count(CrawlMetrics.PAGES_TRUNCATED);
+        metrics.hostResult(Frontier.hostOf(this.url), failed);
+
+        HostControl.Outcome outcome = outcome(page, error);
+        if (outcome == HostControl.Outcome.THROTTLED) metrics.count(CrawlMetrics.FETCH_THROTTLED);
+        if (outcome == HostControl.Outcome.TIMEOUT) metrics.count(CrawlMetrics.FETCH_TIMEOUTS);
+        // a bare 503 may just be this page failing; a 429 or a Retry-After means the host wants it later
+        this.retry = outcome == HostControl.Outcome.TIMEOUT || (outcome == HostControl.Outcome.THROTTLED
+                && (page.status == 429 || page.retryAfterMillis >= 0));
+        this.manager.fetched(this.url, outcome, page == null ? -1 : page.status,
+                page != null && page.headerNanos >= 0 ? page.headerNanos : nanos, page == null ? -1 : page.retryAfterMillis);
+    }
+
+    private static HostControl.Outcome outcome(FetchResult page, Throwable error) {
+        if (page != null) {
+            return page.status == 429 || page.status == HttpURLConnection.HTTP_UNAVAILABLE
+                    ? HostControl.Outcome.THROTTLED : HostControl.Outcome.OK;
+        }
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof SocketTimeoutException || t instanceof HttpTimeoutException) return HostControl.Outcome.TIMEOUT;
         }
+        return HostControl.Outcome.FAILED;
     }
 
-    @Override
-    public void run() {
-        HeadMeta meta = head(this.url);
+    // Whether the fetch should be tried again instead of processed (see CrawlManager.runTask)
+    boolean shouldRetry() {
+        return this.retry;
+    }
 
+    // CPU stage: parse the page, skip it if it is a near-duplicate, report its matching sentences and
+    // pick out the links to follow
+    void process() {
+        FetchResult page = this.page;
+        PageCache.Entry cached = this.cached;
+        Throwable error = this.error;
+        String duplicateOf = null;
         try {
-            Document doc = Jsoup.connect(this.url).timeout(5000).get();
-            String html = doc.html();
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                System.err.println("Error crawling " + this.url + ": " + cause.getMessage());
+                return;
+            }
+            if (page.status >= 400) {
+                System.err.println("Error crawling " + this.url + ": HTTP " + page.status);
+                return;
+            }
+            if (page.body == null) return; // not a text page
+
+            List<String> topics = this.parser.getMatcher().getTopics();
+            boolean fromCache = page.status == HttpURLConnection.HTTP_NOT_MODIFIED && cached.topics.equals(topics);
+            this.fromCache = fromCache;
+            NearDuplicateIndex duplicates = this.manager.getDuplicateIndex();
+            PageCache cache = this.manager.getPageCache();
+            boolean store = !fromCache && cache != null && page.hasValidators();
+
+            // fingerprint the text before extracting anything, so a near-duplicate costs no matching or links
+            Document doc = null;
+            StreamingHtmlExtractor.Result streamed = null;
+            String text = null;
+            long simHash = 0;
+            if (fromCache) {
+                simHash = cached.simHash; // unchanged page, same topics: nothing to parse
+            } else {
+                long parseStart = System.nanoTime();
+                if (this.config.getExtractionMode() == ExtractionMode.STREAMING) {
+                    streamed = StreamingHtmlExtractor.extract(page.body, page.charset, page.url);
+                    text = streamed.text;
+                } else {
+                    doc = page.parse();
+                    text = HTMLParser.pageText(doc);
+                }
+                this.manager.getMetrics().record(CrawlMetrics.PARSE, System.nanoTime() - parseStart);
+                if (duplicates != null || store) simHash = SimHash.of(text);
+            }
+            if (duplicates != null && simHash != 0) {
+                duplicateOf = duplicates.findOrAdd(this.url, simHash);
+                if (duplicateOf != null) {
+                    this.manager.getMetrics().count(CrawlMetrics.PAGES_DUPLICATE);
+                    return;
+                }
+            }
 
-            List<SentenceMatch> matchingSentences = this.parser.extractMatchingSentences(html, url);
+            List<SentenceMatch> matchingSentences;
+            List<Candidate> links = null;
+            if (fromCache) {
+                matchingSentences = cached.matches;
+                links = cached.links;
+            } else {
+                long matchStart = System.nanoTime();
+                matchingSentences = this.parser.extractMatchingSentencesFromText(text, url);
+                this.manager.getMetrics().record(CrawlMetrics.MATCH, System.nanoTime() - matchStart);
+                if (store || this.depth < this.config.getMaxDepth()) {
+                    links = doc != null ? candidates(doc) : candidates(streamed.anchors);
+                }
+                if (store) {
+                    cache.store(new PageCache.Entry(this.url, page.url, page.contentType, page.charset, page.etag,
+                            page.lastModified, page.body, simHash, topics, matchingSentences, links));
+                }
+            }
+            this.manager.getMetrics().count(CrawlMetrics.MATCHES, matchingSentences.size());
             matchingSentences.forEach(onMatch);
 
             if (this.depth < this.config.getMaxDepth()) {
-                Elements links = doc.select("a[href]");
-                int followed = 0;
-                for (Element link : links) {
-                    String absUrl = link.absUrl("href");
-                    if (shouldFollow(absUrl)) {
-                        String norm = CrawlManager.normalizeUrl(absUrl);
-                        if (this.manager.submitNewLink(norm, this.url, this.depth + 1)) {
-                            System.out.println(link + " " + followed);
-                            if (++followed >= 10) break; // 10 was an arbitrary choice for performance/sanity reasons
-                        }
-                    }
-                }
+                this.links = links;
+                this.matchCount = matchingSentences.size();
             }
         } catch (IOException e) {
             System.err.println("Error crawling " + this.url + ": " + e.getMessage());
         } finally {
-            this.manager.log(new LinkRecord(
+            FetchResult meta = this.meta;
+            this.record = new LinkRecord(
                     this.url,
                     this.parentUrl,
                     this.depth,
-                    meta.status,
-                    meta.len,
-                    meta.type
-            ));
+                    meta == null ? -1 : meta.status,
+                    meta == null ? -1 : meta.sizeBytes,
+                    meta == null ? null : meta.contentType,
+                    duplicateOf,
+                    page != null && page.truncated,
+                    this.attempts
+            );
+            this.meta = null; // the body isn't needed any more
+            this.page = null;
+            this.cached = null;
         }
     }
+
+    // Admission stage: queue the links process() picked, then log the page. Logging comes last so a
+    // resumed crawl never sees the page as done without its links queued.
+    void admitLinks() {
+        if (this.links != null) followLinks(this.links, this.matchCount, this.fromCache);
+        this.links = null;
+        if (this.record != null) this.manager.log(this.record);
+    }
 }
@@ -0,0 +1,24 @@
+package crawler;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Full normalized URL strings; exact, but every URL costs its string plus a map node on the heap
+public class ExactVisitedSet implements VisitedSet {
+    private final Set<String> urls = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public boolean add(String url) {
+        return this.urls.add(url);
+    }
+
+    @Override
+    public boolean contains(String url) {
+        return this.urls.contains(url);
+    }
+
+    @Override
+    public int size() {
+        return this.urls.size();
+    }
+}
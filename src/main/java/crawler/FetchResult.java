@@ -0,0 +1,143 @@
+package crawler;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+// What a Fetcher got back for one request
+public class FetchResult {
+    public final String url; // final URL after redirects, used as the base for relative links
+    public final int status;
+    public final long sizeBytes;
+    public final String contentType;
+    public final String charset;
+    public final byte[] body; // null when the body wasn't read (HEAD, error status, non-text type, 304)
+    public final String etag;         // validators for a later conditional GET, null if the server sent none
+    public final String lastModified;
+    public final boolean truncated;   // body stopped at the size limit; sizeBytes is still the full size if known
+    public final long headerNanos;    // from sending the request until the response headers were in, -1 if not measured
+    public final long retryAfterMillis; // how long the server asked us to wait (Retry-After), -1 if it didn't
+
+    public FetchResult(String url, int status, long sizeBytes, String contentType, String charset, byte[] body,
+                       String etag, String lastModified, boolean truncated, long headerNanos, long retryAfterMillis) {
+        this.url = url;
+        this.status = status;
+        this.sizeBytes = sizeBytes;
+        this.contentType = contentType;
+        this.charset = charset;
+        this.body = body;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.truncated = truncated;
+        this.headerNanos = headerNanos;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    // A GET whose body was read (possibly only up to the size limit)
+    public static FetchResult ok(String url, int status, long sizeBytes, String contentType, String charset, byte[] body,
+                                 String etag, String lastModified, boolean truncated, long headerNanos) {
+        return new FetchResult(url, status, sizeBytes, contentType, charset, body, etag, lastModified, truncated,
+                headerNanos, -1);
+    }
+
+    // A GET whose body wasn't read: an error status, a type that can't hold text, or 304 Not Modified
+    public static FetchResult withoutBody(String url, int status, long sizeBytes, String contentType, String etag,
+                                          String lastModified, long headerNanos, long retryAfterMillis) {
+        return new FetchResult(url, status, sizeBytes, contentType, null, null, etag, lastModified, false,
+                headerNanos, retryAfterMillis);
+    }
+
+    // A HEAD request: status and metadata only
+    public static FetchResult head(String url, int status, long sizeBytes, String contentType) {
+        return new FetchResult(url, status, sizeBytes, contentType, null, null, null, null, false, -1, -1);
+    }
+
+    public boolean hasValidators() {
+        return this.etag != null || this.lastModified != null;
+    }
+
+    public Document parse() throws IOException {
+        return Jsoup.parse(new ByteArrayInputStream(this.body), this.charset, this.url);
+    }
+
+    // Same rule Jsoup applies in get(): text/* or an xml application type
+    static boolean isParseable(String contentType) {
+        if (contentType == null) return true;
+        String t = contentType.toLowerCase();
+        return t.startsWith("text/") || (t.startsWith("application/") && t.contains("xml"));
+    }
+
+    static boolean shouldReadBody(int status, String contentType) {
+        return status < 400 && status != HttpURLConnection.HTTP_NOT_MODIFIED && isParseable(contentType);
+    }
+
+    // Read at most maxBytes (0 for no limit) of the stream into out; true if there was more
+    static boolean readBounded(InputStream in, long maxBytes, ByteArrayOutputStream out) throws IOException {
+        long limit = maxBytes <= 0 ? Long.MAX_VALUE : maxBytes;
+        byte[] chunk = new byte[8192];
+        long total = 0;
+        while (true) {
+            long left = limit - total;
+            int n = in.read(chunk, 0, left < chunk.length ? (int) left + 1 : chunk.length); // one byte past the limit tells whether there is more
+            if (n < 0) return false;
+            if (total + n > limit) {
+                out.write(chunk, 0, (int) (limit - total));
+                return true;
+            }
+            out.write(chunk, 0, n);
+            total += n;
+        }
+    }
+
+    static long parseContentLength(String header) {
+        if (header == null) return -1;
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Retry-After is either a number of seconds or an HTTP date; -1 if missing or unreadable
+    static long parseRetryAfter(String header) {
+        if (header == null) return -1;
+        String v = header.trim();
+        try {
+            return Math.max(0, Math.min(Long.parseLong(v), Integer.MAX_VALUE)) * 1000;
+        } catch (NumberFormatException e) {
+            // not seconds, try a date
+        }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, at.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    // charset=... parameter of a Content-Type header, or null to let Jsoup sniff it
+    static String charsetOf(String contentType) {
+        if (contentType == null) return null;
+        int i = contentType.toLowerCase().indexOf("charset=");
+        if (i < 0) return null;
+        String cs = contentType.substring(i + 8).trim();
+        int end = cs.indexOf(';');
+        if (end >= 0) cs = cs.substring(0, end).trim();
+        cs = cs.replace("\"", "").replace("'", "");
+        try {
+            return Charset.isSupported(cs) ? cs : null;
+        } catch (IllegalCharsetNameException e) {
+            return null;
+        }
+    }
+}
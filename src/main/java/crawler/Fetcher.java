@@ -0,0 +1,34 @@
+package crawler;
+
+import java.util.concurrent.CompletableFuture;
+
+// Downloads pages for CrawlTask. Implementations may block the calling thread until the response
+// is in (BlockingFetcher) or return straight away and complete the future later (AsyncFetcher).
+public interface Fetcher {
+    // Used when the caller doesn't pick a timeout (CrawlTask picks one per host, see HostControl)
+    long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+    // GET the page; the body is only read for successful text responses
+    default CompletableFuture<FetchResult> get(String url) {
+        return get(url, null, null);
+    }
+
+    default CompletableFuture<FetchResult> get(String url, String etag, String lastModified) {
+        return get(url, etag, lastModified, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    // Conditional GET: with a validator from an earlier response the server may answer 304 Not Modified
+    // (and no body) instead of sending the page again. Either validator may be null. The request fails
+    // if the server doesn't answer within timeoutMillis.
+    CompletableFuture<FetchResult> get(String url, String etag, String lastModified, long timeoutMillis);
+
+    default CompletableFuture<FetchResult> head(String url) {
+        return head(url, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    // HEAD the page for metadata only
+    CompletableFuture<FetchResult> head(String url, long timeoutMillis);
+
+    default void close() {
+    }
+}
@@ -0,0 +1,193 @@
+package crawler;
+
+import model.CrawlConfig;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Best-first, per-host frontier: starts the highest-scoring queued URL whose host is free on the worker
+// pool, while keeping the number of in-flight pages under the global and per-host limits and spacing
+// out requests to a host. A page counts as in flight until the stage returned by the worker completes.
+// How many pages of a host may be in flight, and for how long, adapts to how the host answers (HostControl).
+class Frontier {
+    private final int maxConcurrency;
+    private final int maxConcurrencyPerHost;
+    private final boolean adaptive;
+    private final long timeoutMillis;
+    private final long hostDelayNanos;
+    private final Executor workers;
+    private final ScheduledExecutorService timer;
+    private final Function<FrontierEntry, CompletionStage<?>> worker;
+    private final CrawlMetrics metrics;
+
+    private final Map<String, HostQueue> hosts = new HashMap<>();
+    private final List<HostQueue> pendingHosts = new ArrayList<>(); // hosts with queued URLs
+    private int running = 0;
+    private int queued = 0;
+    private long nextSeq = 0;
+    private boolean wakeupPending = false;
+    private long wakeupAt;
+
+    // Queued URLs, politeness and adaptive limits for one host
+    private static class HostQueue {
+        final String host;
+        final PriorityQueue<FrontierEntry> queue = new PriorityQueue<>(FrontierEntry.BEST_FIRST);
+        final HostControl control;
+        int active = 0;
+        long nextAllowed; // nanoTime, compared by difference only
+
+        HostQueue(String host, HostControl control) {
+            this.host = host;
+            this.control = control;
+            this.nextAllowed = System.nanoTime();
+        }
+    }
+
+    Frontier(CrawlConfig config, Executor workers, ScheduledExecutorService timer, CrawlMetrics metrics,
+             Function<FrontierEntry, CompletionStage<?>> worker) {
+        this.maxConcurrency = Math.max(1, config.getMaxConcurrency());
+        this.maxConcurrencyPerHost = Math.max(1, config.getMaxConcurrencyPerHost());
+        this.adaptive = config.isAdaptiveHostLimits();
+        this.timeoutMillis = Math.max(1, config.getFetchTimeoutMillis());
+        this.hostDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getHostDelayMillis()));
+        this.workers = workers;
+        this.timer = timer;
+        this.worker = worker;
+        this.metrics = metrics;
+    }
+
+    // scheme://host[:port] of an already-normalized URL
+    static String hostOf(String url) {
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = url.indexOf('/', start);
+        return end < 0 ? url : url.substring(0, end);
+    }
+
+    private HostQueue host(String host) {
+        return this.hosts.computeIfAbsent(host, k -> new HostQueue(k,
+                new HostControl(this.adaptive, this.maxConcurrencyPerHost, this.timeoutMillis)));
+    }
+
+    synchronized void add(FrontierEntry entry) {
+        HostQueue h = host(hostOf(entry.url));
+        if (h.queue.isEmpty()) this.pendingHosts.add(h);
+        entry.seq = this.nextSeq++;
+        h.queue.add(entry);
+        this.queued++;
+        pump();
+    }
+
+    // Drop everything still queued (e.g. once the page budget is spent); returns how many entries were dropped
+    synchronized int clear() {
+        int dropped = 0;
+        for (HostQueue h : this.pendingHosts) {
+            dropped += h.queue.size();
+            h.queue.clear();
+        }
+        this.pendingHosts.clear();
+        this.queued = 0;
+        return dropped;
+    }
+
+    synchronized int queued() {
+        return this.queued;
+    }
+
+    synchronized int running() {
+        return this.running;
+    }
+
+    // How long a request to the URL's host may take right now
+    synchronized long timeoutMillis(String url) {
+        return host(hostOf(url)).control.timeoutMillis();
+    }
+
+    // Feed the outcome of a GET back into its host's limits; a Retry-After holds the host back right away
+    synchronized void fetched(String url, HostControl.Outcome outcome, int status, long latencyNanos, long retryAfterMillis) {
+        HostQueue h = host(hostOf(url));
+        HostControl c = h.control;
+        int pausesBefore = c.pauses();
+        long now = System.nanoTime();
+        int change = c.record(outcome, status, latencyNanos, retryAfterMillis, now);
+        if (c.pauses() != pausesBefore) {
+            if (c.pausedUntil() - h.nextAllowed > 0) h.nextAllowed = c.pausedUntil();
+            this.metrics.count(CrawlMetrics.HOST_PAUSES);
+        }
+        if (change > 0) this.metrics.count(CrawlMetrics.HOST_LIMIT_INCREASES);
+        if (change < 0) this.metrics.count(CrawlMetrics.HOST_LIMIT_DECREASES);
+        this.metrics.hostLimits(h.host, new CrawlMetrics.HostLimits(c.limit(), c.timeoutMillis(),
+                c.p50Nanos() / 1e6, c.p95Nanos() / 1e6, c.pauseMillis(now)));
+        if (change > 0) pump();
+    }
+
+    private synchronized void complete(HostQueue h) {
+        h.active--;
+        this.running--;
+        pump();
+    }
+
+    private synchronized void wakeup() {
+        this.wakeupPending = false;
+        pump();
+    }
+
+    // Dispatch as many queued URLs as the limits allow, best score first; called with the lock held.
+    // Picking the host scans every host with queued URLs, which stays cheap as long as a crawl
+    // spans a modest number of hosts.
+    private void pump() {
+        long now = System.nanoTime();
+        while (this.running < this.maxConcurrency) {
+            HostQueue best = null;
+            long earliestDelayed = Long.MAX_VALUE;
+            boolean delayed = false;
+            for (HostQueue h : this.pendingHosts) {
+                if (h.active >= h.control.limit()) continue; // picked up again when one of its pages completes
+                if (now - h.nextAllowed < 0) {
+                    if (!delayed || h.nextAllowed - earliestDelayed < 0) earliestDelayed = h.nextAllowed;
+                    delayed = true;
+                    continue;
+                }
+                if (best == null || FrontierEntry.BEST_FIRST.compare(h.queue.peek(), best.queue.peek()) < 0) best = h;
+            }
+            if (best == null) {
+                if (delayed) scheduleWakeup(earliestDelayed);
+                return;
+            }
+
+            HostQueue h = best;
+            FrontierEntry entry = h.queue.poll();
+            this.queued--;
+            h.active++;
+            h.nextAllowed = now + this.hostDelayNanos;
+            this.running++;
+            if (h.queue.isEmpty()) this.pendingHosts.remove(h);
+
+            this.workers.execute(() -> {
+                CompletionStage<?> done;
+                try {
+                    done = this.worker.apply(entry);
+                } catch (RuntimeException | Error e) {
+                    complete(h);
+                    throw e;
+                }
+                done.whenComplete((r, e) -> complete(h));
+            });
+        }
+    }
+
+    private void scheduleWakeup(long at) {
+        if (this.wakeupPending && this.wakeupAt - at <= 0) return; // an earlier wakeup is already pending
+        this.wakeupPending = true;
+        this.wakeupAt = at;
+        this.timer.schedule(this::wakeup, Math.max(0, at - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+}
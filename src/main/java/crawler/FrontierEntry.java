@@ -0,0 +1,35 @@
+package crawler;
+
+import java.util.Comparator;
+
+// A URL waiting in the frontier along with where it was found and how promising it looks
+class FrontierEntry {
+    // best score first, then shallower, then first come first served
+    static final Comparator<FrontierEntry> BEST_FIRST = Comparator
+            .comparingDouble((FrontierEntry e) -> -e.score)
+            .thenComparingInt(e -> e.depth)
+            .thenComparingLong(e -> e.seq);
+
+    final String url;
+    final String parentUrl;
+    final int depth;
+    final double score;
+    final int retries; // times the page was queued again after a 429/503 or timeout
+    long seq; // assigned by the frontier on arrival
+
+    FrontierEntry(String url, String parentUrl, int depth) {
+        this(url, parentUrl, depth, 0);
+    }
+
+    FrontierEntry(String url, String parentUrl, int depth, double score) {
+        this(url, parentUrl, depth, score, 0);
+    }
+
+    FrontierEntry(String url, String parentUrl, int depth, double score, int retries) {
+        this.url = url;
+        this.parentUrl = parentUrl;
+        this.depth = depth;
+        this.score = score;
+        this.retries = retries;
+    }
+}
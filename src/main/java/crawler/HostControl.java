@@ -0,0 +1,144 @@
+package crawler;
+
+import java.util.Arrays;
+
+// Adaptive limits for one host, adjusted after every GET from how the host answered:
+// - concurrency is additive-increase/multiplicative-decrease. It starts at 2 and doubles after every
+//   full window of good responses (a window is as many responses as the current limit) until the first
+//   sign of overload, then grows by 1 per window. A 429/503, a timeout or a failed connection halves it,
+//   and so does the recent median latency passing twice the host's usual. It never goes below 1 or above
+//   the configured per-host maximum, and drops at most once per window, so one overload counts once.
+// - the timeout is a few times the recent p95 latency, between MIN_TIMEOUT_MILLIS and the configured
+//   timeout, and doubles after every timeout
+// - a 429, or a 503 with Retry-After, pauses the host for as long as Retry-After says (or 1 s, 2 s, 4 s...
+//   when a 429 doesn't say)
+// Not thread-safe; Frontier calls it with its lock held.
+class HostControl {
+    static final long MIN_TIMEOUT_MILLIS = 1000;
+    private static final int INITIAL_LIMIT = 2;
+    private static final int SAMPLES = 32;           // recent latencies the percentiles come from
+    private static final int MIN_SAMPLES = 8;        // before that, the configured timeout applies
+    private static final int TIMEOUT_FACTOR = 4;     // timeout = this many times the recent p95
+    private static final long MAX_BACKOFF_MILLIS = 120_000;
+    private static final long FIRST_BACKOFF_MILLIS = 1000;
+
+    // What one GET told us about the host
+    enum Outcome {
+        OK,        // any response that isn't one of the below
+        THROTTLED, // 429, or 503 (the server is overloaded)
+        TIMEOUT,
+        FAILED     // no response: refused, reset, DNS...
+    }
+
+    private final boolean adaptive;
+    private final int maxLimit;
+    private final long maxTimeoutMillis;
+
+    private double limit;
+    private boolean slowStart = true;
+    private long timeoutMillis;
+    private final long[] latencies = new long[SAMPLES]; // ring of recent latencies in nanoseconds
+    private int samples;
+    private long usualMedian = -1;   // the host's median latency when it isn't overloaded
+    private int sinceChange;         // responses since the limit last changed
+    private boolean overloaded;      // a sign of overload since the limit last changed
+    private int throttledInRow;
+    private boolean paused;          // pausedUntil is only set once the host has been paused
+    private long pausedUntil;        // nanoTime; the host gets no requests before this
+    private int pauses;
+    private long p50;
+    private long p95;
+
+    HostControl(boolean adaptive, int maxLimit, long timeoutMillis) {
+        this.adaptive = adaptive;
+        this.maxLimit = Math.max(1, maxLimit);
+        this.maxTimeoutMillis = Math.max(1, timeoutMillis);
+        this.limit = adaptive ? Math.min(INITIAL_LIMIT, this.maxLimit) : this.maxLimit;
+        this.timeoutMillis = this.maxTimeoutMillis;
+    }
+
+    int limit() {
+        return (int) this.limit;
+    }
+
+    long timeoutMillis() {
+        return this.timeoutMillis;
+    }
+
+    // Only meaningful once pauses() > 0
+    long pausedUntil() {
+        return this.pausedUntil;
+    }
+
+    // How many times a 429/503 has paused the host
+    int pauses() {
+        return this.pauses;
+    }
+
+    // What is left of the current pause, 0 when there is none
+    long pauseMillis(long now) {
+        return this.paused && this.pausedUntil - now > 0 ? (this.pausedUntil - now) / 1_000_000 : 0;
+    }
+
+    long p50Nanos() {
+        return this.p50;
+    }
+
+    long p95Nanos() {
+        return this.p95;
+    }
+
+    // Learn from one GET; latencyNanos is until the response headers (or the failure), retryAfterMillis
+    // is -1 unless the server sent Retry-After. Returns how far the limit moved: +n, -n or 0.
+    int record(Outcome outcome, int status, long latencyNanos, long retryAfterMillis, long now) {
+        if (outcome == Outcome.THROTTLED && (status == 429 || retryAfterMillis >= 0)) {
+            long pause = retryAfterMillis >= 0 ? retryAfterMillis
+                    : FIRST_BACKOFF_MILLIS << Math.min(this.throttledInRow, 16);
+            long until = now + Math.min(pause, MAX_BACKOFF_MILLIS) * 1_000_000;
+            if (!this.paused || until - this.pausedUntil > 0) this.pausedUntil = until; // nanoTime may be negative
+            this.paused = true;
+            this.pauses++;
+            this.throttledInRow++;
+        } else if (outcome == Outcome.OK) {
+            this.throttledInRow = 0;
+        }
+        long timeout = this.timeoutMillis;
+        if (outcome != Outcome.FAILED) addLatency(latencyNanos); // a timeout was at least that slow
+        if (!this.adaptive) return 0;
+        if (outcome == Outcome.TIMEOUT) this.timeoutMillis = Math.max(this.timeoutMillis, Math.min(this.maxTimeoutMillis, 2 * timeout));
+        if (outcome != Outcome.OK) this.overloaded = true;
+
+        if (++this.sinceChange < this.limit) return 0;
+        // a full window since the last change
+        if (!this.overloaded && this.usualMedian > 0 && this.samples >= MIN_SAMPLES && this.p50 > 2 * this.usualMedian) {
+            this.overloaded = true; // queueing up on the server
+        }
+        int before = limit();
+        if (this.overloaded) {
+            this.limit = Math.max(1, this.limit / 2);
+            this.slowStart = false;
+        } else {
+            this.limit = Math.min(this.maxLimit, this.slowStart ? this.limit * 2 : this.limit + 1);
+            if (this.samples >= MIN_SAMPLES) {
+                // follows the host's latency up slowly and down at once
+                this.usualMedian = this.usualMedian < 0 || this.p50 < this.usualMedian ? this.p50
+                        : this.usualMedian + (this.p50 - this.usualMedian) / 8;
+            }
+        }
+        this.sinceChange = 0;
+        this.overloaded = false;
+        return limit() - before;
+    }
+
+    private void addLatency(long nanos) {
+        this.latencies[this.samples++ % SAMPLES] = Math.max(0, nanos);
+        if (this.samples < MIN_SAMPLES) return;
+        long[] sorted = Arrays.copyOf(this.latencies, Math.min(this.samples, SAMPLES));
+        Arrays.sort(sorted);
+        this.p50 = sorted[(sorted.length - 1) / 2];
+        this.p95 = sorted[(int) Math.ceil(0.95 * sorted.length) - 1];
+        if (!this.adaptive) return;
+        long timeout = TIMEOUT_FACTOR * this.p95 / 1_000_000;
+        this.timeoutMillis = Math.max(Math.min(MIN_TIMEOUT_MILLIS, this.maxTimeoutMillis), Math.min(this.maxTimeoutMillis, timeout));
+    }
+}
@@ -0,0 +1,91 @@
+package crawler;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free latency histogram in nanoseconds. Buckets are log-linear: every power of two is split into
+// 8 sub-buckets, so a percentile is within 12.5% of the true value, from 1 ns up to about half an hour.
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40; // buckets end at 2^41 ns (~37 minutes); anything longer lands in the last one
+
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    // What a snapshot reports, in milliseconds
+    public static class Summary {
+        public final long count;
+        public final double meanMillis;
+        public final double p50Millis;
+        public final double p90Millis;
+        public final double p99Millis;
+        public final double maxMillis;
+
+        Summary(long count, double meanMillis, double p50Millis, double p90Millis, double p99Millis, double maxMillis) {
+            this.count = count;
+            this.meanMillis = meanMillis;
+            this.p50Millis = p50Millis;
+            this.p90Millis = p90Millis;
+            this.p99Millis = p99Millis;
+            this.maxMillis = maxMillis;
+        }
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        this.counts.incrementAndGet(bucket(nanos));
+        this.total.increment();
+        this.sum.add(nanos);
+        long m = this.max.get();
+        while (nanos > m && !this.max.compareAndSet(m, nanos)) m = this.max.get();
+    }
+
+    private static int bucket(long v) {
+        if (v < SUB_BUCKETS) return (int) v;
+        if (v >= 1L << (MAX_EXPONENT + 1)) v = (1L << (MAX_EXPONENT + 1)) - 1;
+        int exponent = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Upper end of a bucket
+    private static long bucketLimit(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = index % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+
+    // Value at or below which a share p of the recorded values fall, in nanoseconds
+    public long percentile(double p) {
+        long[] snapshot = new long[this.counts.length()];
+        long n = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = this.counts.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p * n));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return Math.min(bucketLimit(i), this.max.get());
+        }
+        return this.max.get();
+    }
+
+    public long count() {
+        return this.total.sum();
+    }
+
+    public Summary summary() {
+        long n = count();
+        double mean = n == 0 ? 0 : this.sum.sum() / (double) n / 1e6;
+        return new Summary(n, mean, percentile(0.50) / 1e6, percentile(0.90) / 1e6, percentile(0.99) / 1e6,
+                this.max.get() / 1e6);
+    }
+}
@@ -0,0 +1,62 @@
+package crawler;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import parser.TopicMatcher;
+
+// Estimates how likely a link is to lead to matching sentences, so the frontier can fetch the most
+// promising pages first. Higher is better; the weights are rough and only their order matters much.
+public class LinkScorer {
+    private static final double ANCHOR_WEIGHT = 3.0;   // topic in the link text
+    private static final double CONTEXT_WEIGHT = 1.5;  // topic in the text right around the link
+    private static final double URL_WEIGHT = 1.0;      // topic in the URL itself
+    private static final double PARENT_WEIGHT = 2.0;   // scaled by how many matches the linking page had
+    private static final double DEPTH_PENALTY = 0.25;  // per level below the seed
+    private static final int MATCHES_FOR_FULL_RELEVANCE = 5;
+
+    private final TopicMatcher matcher;
+
+    public LinkScorer(TopicMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+    // 0..1 relevance of the page a link was found on, from its number of matching sentences
+    public static double pageRelevance(int matchingSentences) {
+        return Math.min(1.0, matchingSentences / (double) MATCHES_FOR_FULL_RELEVANCE);
+    }
+
+    // Combine the part of the score that only depends on the link itself (which the page cache keeps)
+    // with where the link was found
+    public static double score(double linkScore, int depth, double pageRelevance) {
+        return linkScore + PARENT_WEIGHT * pageRelevance - DEPTH_PENALTY * depth;
+    }
+
+    // Score from the link's own text, surroundings and URL
+    public double linkScore(Element link, String absUrl) {
+        return linkScore(link.text(), surroundingText(link), absUrl);
+    }
+
+    // The same score for a link found without a DOM (see StreamingHtmlExtractor)
+    public double linkScore(String anchorText, String context, String absUrl) {
+        double score = 0;
+
+        if (this.matcher.matches(anchorText)) {
+            score += ANCHOR_WEIGHT;
+        } else if (this.matcher.matches(context)) {
+            score += CONTEXT_WEIGHT;
+        }
+        if (this.matcher.matches(absUrl)) score += URL_WEIGHT;
+
+        return score;
+    }
+
+    // Text nodes directly before and after the link, e.g. the rest of the sentence it sits in
+    private static String surroundingText(Element link) {
+        Node prev = link.previousSibling();
+        Node next = link.nextSibling();
+        String before = prev instanceof TextNode ? ((TextNode) prev).text() : "";
+        String after = next instanceof TextNode ? ((TextNode) next).text() : "";
+        return before + " " + after;
+    }
+}
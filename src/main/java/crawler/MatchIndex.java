@@ -0,0 +1,232 @@
+package crawler;
+
+import model.LinkRecord;
+import model.SentenceMatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Inverted index over the matches of a crawl, built as they arrive: every word of a sentence and of its
+// source URL points to the matches that contain it, so a search costs as much as the words it names
+// rather than as much as all the results. Matches are numbered in arrival order (the GUI's row numbers).
+// Pass it as the crawl's onMatch and add it as a log sink so it also learns the depth of every page:
+//
+//   MatchIndex index = new MatchIndex();
+//   CrawlManager manager = new CrawlManager(config, index, n -> {});
+//   manager.addLogSink(index);
+public class MatchIndex implements Consumer<SentenceMatch>, CrawlLogSink {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<SentenceMatch> matches = new ArrayList<>();
+    private final TreeMap<String, IntList> words = new TreeMap<>(); // sorted, so a prefix is a range
+    private final TreeMap<String, IntList> urls = new TreeMap<>();
+    private final Map<String, Integer> depths = new ConcurrentHashMap<>();
+
+    // Match ids in ascending order, appended as matches arrive
+    private static class IntList {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (this.size > 0 && this.ids[this.size - 1] == id) return; // word repeated in one sentence
+            if (this.size == this.ids.length) this.ids = Arrays.copyOf(this.ids, this.size * 2);
+            this.ids[this.size++] = id;
+        }
+
+        void addTo(BitSet set) {
+            for (int i = 0; i < this.size; i++) set.set(this.ids[i]);
+        }
+    }
+
+    // What to look for. Every word of text must occur in the sentence or its URL; with prefix set the last
+    // word may also just start a word, as while typing. Empty text matches everything the filters let through.
+    public static class Query {
+        public final String text;
+        public final boolean prefix;
+        public final String urlPrefix; // null for any page
+        public final int minDepth;
+        public final int maxDepth;
+
+        public Query(String text, boolean prefix) {
+            this(text, prefix, null, 0, Integer.MAX_VALUE);
+        }
+
+        public Query(String text, boolean prefix, String urlPrefix, int minDepth, int maxDepth) {
+            this.text = text == null ? "" : text;
+            this.prefix = prefix;
+            this.urlPrefix = urlPrefix == null || urlPrefix.isEmpty() ? null : urlPrefix;
+            this.minDepth = minDepth;
+            this.maxDepth = maxDepth;
+        }
+    }
+
+    // The ids a query found, ascending, with wrap-around navigation from any position
+    public static class Hits {
+        private final int[] ids;
+
+        Hits(int[] ids) {
+            this.ids = ids;
+        }
+
+        public int size() {
+            return this.ids.length;
+        }
+
+        public int get(int i) {
+            return this.ids[i];
+        }
+
+        public boolean contains(int id) {
+            return Arrays.binarySearch(this.ids, id) >= 0;
+        }
+
+        // First hit after id (after -1 is the first hit), wrapping around; -1 if there are none
+        public int next(int id) {
+            if (this.ids.length == 0) return -1;
+            int i = Arrays.binarySearch(this.ids, id);
+            i = i >= 0 ? i + 1 : -i - 1;
+            return this.ids[i < this.ids.length ? i : 0];
+        }
+
+        // Last hit before id, wrapping around; -1 if there are none
+        public int previous(int id) {
+            if (this.ids.length == 0) return -1;
+            int i = Arrays.binarySearch(this.ids, id);
+            i = (i >= 0 ? i : -i - 1) - 1;
+            return this.ids[i >= 0 ? i : this.ids.length - 1];
+        }
+
+        // Position of id among the hits, or -1
+        public int indexOf(int id) {
+            int i = Arrays.binarySearch(this.ids, id);
+            return i >= 0 ? i : -1;
+        }
+    }
+
+    @Override
+    public void accept(SentenceMatch m) {
+        add(m);
+    }
+
+    // Returns the new match's id
+    public int add(SentenceMatch m) {
+        this.lock.writeLock().lock();
+        try {
+            int id = this.matches.size();
+            this.matches.add(m);
+            for (String w : tokens(m.getSentence())) this.words.computeIfAbsent(w, k -> new IntList()).add(id);
+            for (String w : tokens(m.getSourceUrl())) this.words.computeIfAbsent(w, k -> new IntList()).add(id);
+            this.urls.computeIfAbsent(m.getSourceUrl(), k -> new IntList()).add(id);
+            return id;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    // Remembers the depth of every logged page, for the depth filters
+    @Override
+    public void accept(LinkRecord r) {
+        this.depths.put(r.url, r.depth);
+    }
+
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.matches.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public SentenceMatch get(int id) {
+        this.lock.readLock().lock();
+        try {
+            return this.matches.get(id);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    // Depth of the page a match came from, or -1 if that page hasn't been logged
+    public int depthOf(int id) {
+        return this.depths.getOrDefault(get(id).getSourceUrl(), -1);
+    }
+
+    public void clear() {
+        this.lock.writeLock().lock();
+        try {
+            this.matches.clear();
+            this.words.clear();
+            this.urls.clear();
+            this.depths.clear();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public Hits search(Query q) {
+        List<String> terms = tokens(q.text);
+        this.lock.readLock().lock();
+        try {
+            int n = this.matches.size();
+            BitSet result = new BitSet(n);
+            result.set(0, n);
+            for (int i = 0; i < terms.size(); i++) {
+                String t = terms.get(i);
+                BitSet found = new BitSet(n);
+                if (q.prefix && i == terms.size() - 1) {
+                    for (IntList ids : prefixRange(this.words, t).values()) ids.addTo(found);
+                } else {
+                    IntList ids = this.words.get(t);
+                    if (ids != null) ids.addTo(found);
+                }
+                result.and(found);
+            }
+            if (q.urlPrefix != null) {
+                BitSet found = new BitSet(n);
+                for (IntList ids : prefixRange(this.urls, q.urlPrefix).values()) ids.addTo(found);
+                result.and(found);
+            }
+            boolean depthFilter = q.minDepth > 0 || q.maxDepth < Integer.MAX_VALUE;
+            int[] ids = new int[result.cardinality()];
+            int count = 0;
+            for (int id = result.nextSetBit(0); id >= 0; id = result.nextSetBit(id + 1)) {
+                if (depthFilter) {
+                    int depth = this.depths.getOrDefault(this.matches.get(id).getSourceUrl(), -1);
+                    if (depth < q.minDepth || depth > q.maxDepth) continue;
+                }
+                ids[count++] = id;
+            }
+            return new Hits(count == ids.length ? ids : Arrays.copyOf(ids, count));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private static Map<String, IntList> prefixRange(TreeMap<String, IntList> map, String prefix) {
+        return map.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    // Lower-cased runs of letters and digits: the words a sentence, URL or query is indexed or searched by
+    public static List<String> tokens(String s) {
+        List<String> out = new ArrayList<>();
+        if (s == null) return out;
+        int start = -1;
+        for (int i = 0; i <= s.length(); i++) {
+            boolean word = i < s.length() && Character.isLetterOrDigit(s.charAt(i));
+            if (word && start < 0) start = i;
+            if (!word && start >= 0) {
+                out.add(s.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,146 @@
+package crawler;
+
+import model.LinkRecord;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Streams the crawl log to a file, one JSON object per line. Workers only append to a lock-free queue;
+// a background thread drains it in batches, so disk writes never hold up a crawl and nothing is kept in
+// memory once it has been written.
+public class NdjsonCrawlLogSink implements CrawlLogSink {
+    private static final int BATCH = 256;
+    private static final long FLUSH_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final Path file;
+    private final Writer out;
+    private final ConcurrentLinkedQueue<LinkRecord> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread writer;
+    private volatile boolean closed = false;
+    private boolean failed = false; // only touched by the writer thread
+
+    public NdjsonCrawlLogSink(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        this.file = file;
+        this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        this.writer = new Thread(this::drainLoop, "crawl-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void accept(LinkRecord r) {
+        this.queue.offer(r);
+        // wake the writer once a full batch is waiting; smaller batches go out on its timed wakeup
+        if (this.pending.incrementAndGet() == BATCH) LockSupport.unpark(this.writer);
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        LockSupport.unpark(this.writer);
+        try {
+            this.writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainLoop() {
+        StringBuilder line = new StringBuilder(256);
+        while (true) {
+            boolean finished = this.closed; // read before draining so nothing offered earlier is missed
+            LinkRecord r;
+            int drained = 0;
+            while ((r = this.queue.poll()) != null) {
+                write(r, line);
+                drained++;
+            }
+            if (drained > 0) {
+                this.pending.addAndGet(-drained);
+                flush();
+            }
+            if (finished) break;
+            if (this.pending.get() < BATCH) LockSupport.parkNanos(this, FLUSH_NANOS);
+        }
+        try {
+            this.out.close();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void write(LinkRecord r, StringBuilder line) {
+        if (this.failed) return;
+        line.setLength(0);
+        line.append("{\"url\":");
+        quote(line, r.url);
+        line.append(",\"parentUrl\":");
+        quote(line, r.parentUrl);
+        line.append(",\"depth\":").append(r.depth);
+        line.append(",\"status\":").append(r.status);
+        line.append(",\"sizeBytes\":").append(r.sizeBytes);
+        line.append(",\"contentType\":");
+        quote(line, r.contentType);
+        if (r.duplicateOf != null) {
+            line.append(",\"duplicateOf\":");
+            quote(line, r.duplicateOf);
+        }
+        if (r.truncated) line.append(",\"truncated\":true");
+        if (r.attempts > 1) line.append(",\"attempts\":").append(r.attempts);
+        line.append("}\n");
+        try {
+            this.out.append(line);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void flush() {
+        if (this.failed) return;
+        try {
+            this.out.flush();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    // Keep draining (so memory stays bounded) but stop writing after the first error
+    private void fail(IOException e) {
+        if (this.failed) return;
+        this.failed = true;
+        System.err.println("Error writing crawl log " + this.file + ": " + e.getMessage());
+    }
+
+    // Appends s as a JSON string literal, or null
+    public static void quote(StringBuilder sb, String s) {
+        if (s == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+}
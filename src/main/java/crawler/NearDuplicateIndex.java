@@ -0,0 +1,64 @@
+package crawler;
+
+import parser.SimHash;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Pages seen so far by SimHash, for finding near-duplicates within a maximum Hamming distance k.
+// The 64 bits are split into k + 1 bands; two hashes at most k bits apart agree exactly on at least
+// one band, so only pages sharing a band value with the new one need a full distance check.
+class NearDuplicateIndex {
+    private final int maxDistance;
+    private final int[] bandShift;
+    private final long[] bandMask;
+    private final List<Map<Long, List<Page>>> bands = new ArrayList<>();
+
+    private static class Page {
+        final long hash;
+        final String url;
+
+        Page(long hash, String url) {
+            this.hash = hash;
+            this.url = url;
+        }
+    }
+
+    NearDuplicateIndex(int maxDistance) {
+        this.maxDistance = Math.max(0, Math.min(maxDistance, 63));
+        int n = this.maxDistance + 1;
+        this.bandShift = new int[n];
+        this.bandMask = new long[n];
+        int shift = 0;
+        for (int b = 0; b < n; b++) {
+            int bits = 64 / n + (b < 64 % n ? 1 : 0);
+            this.bandShift[b] = shift;
+            this.bandMask[b] = bits == 64 ? -1L : (1L << bits) - 1;
+            shift += bits;
+            this.bands.add(new HashMap<>());
+        }
+    }
+
+    // URL of an earlier page within maxDistance of this one, or null after recording this page as new
+    synchronized String findOrAdd(String url, long hash) {
+        for (int b = 0; b < this.bandShift.length; b++) {
+            List<Page> bucket = this.bands.get(b).get(band(hash, b));
+            if (bucket == null) continue;
+            for (Page p : bucket) {
+                if (SimHash.distance(p.hash, hash) <= this.maxDistance) return p.url;
+            }
+        }
+
+        Page page = new Page(hash, url);
+        for (int b = 0; b < this.bandShift.length; b++) {
+            this.bands.get(b).computeIfAbsent(band(hash, b), k -> new ArrayList<>(1)).add(page);
+        }
+        return null;
+    }
+
+    private long band(long hash, int b) {
+        return (hash >>> this.bandShift[b]) & this.bandMask[b];
+    }
+}
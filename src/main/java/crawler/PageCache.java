@@ -0,0 +1,221 @@
+package crawler;
+
+import model.SentenceMatch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// On-disk store of fetched pages for re-crawls, keyed by normalized URL. Each entry keeps the body and
+// its ETag/Last-Modified validators along with what the crawl got out of the page (matching sentences
+// and scored links). When the server answers a conditional GET with 304 the entry is used as is and the
+// page isn't parsed at all; the body is only parsed again if the crawl's topics have changed.
+//
+// One file per URL under a two-level directory tree; files are replaced atomically, so a crash leaves
+// either the old entry or the new one.
+class PageCache {
+    private static final int MAGIC = 0x50414745; // "PAGE"
+    private static final int VERSION = 2;
+
+    private final Path directory;
+
+    static class Entry {
+        final String url;       // normalized URL the entry is for
+        final String finalUrl;  // after redirects, the base for relative links
+        final String contentType;
+        final String charset;
+        final String etag;
+        final String lastModified;
+        final byte[] body;
+        final long simHash;        // of the page text, 0 if it was too short
+        final List<String> topics; // topics the matches were extracted for
+        final List<SentenceMatch> matches;
+        final List<CrawlTask.Candidate> links;
+
+        Entry(String url, String finalUrl, String contentType, String charset, String etag, String lastModified,
+              byte[] body, long simHash, List<String> topics, List<SentenceMatch> matches, List<CrawlTask.Candidate> links) {
+            this.url = url;
+            this.finalUrl = finalUrl;
+            this.contentType = contentType;
+            this.charset = charset;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+            this.simHash = simHash;
+            this.topics = topics;
+            this.matches = matches;
+            this.links = links;
+        }
+
+        // The cached page, as if the server had sent it again (but with the 304 status it did send)
+        FetchResult asResult() {
+            return FetchResult.ok(this.finalUrl, HttpURLConnection.HTTP_NOT_MODIFIED, this.body.length,
+                    this.contentType, this.charset, this.body, this.etag, this.lastModified, false, -1);
+        }
+    }
+
+    // What a conditional GET needs from an entry
+    static class Validators {
+        final String etag;
+        final String lastModified;
+
+        Validators(String etag, String lastModified) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    PageCache(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+    }
+
+    private Path fileFor(String url) {
+        String name = String.format("%016x", UrlFingerprint.of(url));
+        return this.directory.resolve(name.substring(0, 2)).resolve(name + ".page");
+    }
+
+    // The validators of the entry for this URL, or null if there is none (or it can't be read). Reads
+    // only the header of the file, not the body, matches and links after it.
+    Validators loadValidators(String url) {
+        Path file = fileFor(url);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            if (!url.equals(readString(in))) return null; // fingerprint collision
+            readString(in); // finalUrl
+            readString(in); // contentType
+            readString(in); // charset
+            return new Validators(readString(in), readString(in));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable cache entry " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // The entry for this URL, or null if there is none (or it can't be read)
+    Entry load(String url) {
+        Path file = fileFor(url);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            String storedUrl = readString(in);
+            if (!url.equals(storedUrl)) return null; // fingerprint collision
+
+            String finalUrl = readString(in);
+            String contentType = readString(in);
+            String charset = readString(in);
+            String etag = readString(in);
+            String lastModified = readString(in);
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            long simHash = in.readLong();
+
+            int topicCount = in.readInt();
+            List<String> topics = new ArrayList<>(topicCount);
+            for (int i = 0; i < topicCount; i++) topics.add(readString(in));
+
+            int matchCount = in.readInt();
+            List<SentenceMatch> matches = new ArrayList<>(matchCount);
+            for (int i = 0; i < matchCount; i++) {
+                String sentence = readString(in);
+                int n = in.readInt();
+                List<String> matched = new ArrayList<>(n);
+                for (int j = 0; j < n; j++) matched.add(readString(in));
+                matches.add(new SentenceMatch(sentence, url, matched));
+            }
+
+            int linkCount = in.readInt();
+            List<CrawlTask.Candidate> links = new ArrayList<>(linkCount);
+            for (int i = 0; i < linkCount; i++) {
+                links.add(new CrawlTask.Candidate(readString(in), in.readDouble()));
+            }
+            return new Entry(url, finalUrl, contentType, charset, etag, lastModified, body, simHash, topics, matches, links);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable cache entry " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    void store(Entry e) {
+        Path file = fileFor(e.url);
+        Path tmp = null;
+        try {
+            Files.createDirectories(file.getParent());
+            tmp = Files.createTempFile(file.getParent(), "page", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, e.url);
+                writeString(out, e.finalUrl);
+                writeString(out, e.contentType);
+                writeString(out, e.charset);
+                writeString(out, e.etag);
+                writeString(out, e.lastModified);
+                out.writeInt(e.body.length);
+                out.write(e.body);
+                out.writeLong(e.simHash);
+
+                out.writeInt(e.topics.size());
+                for (String t : e.topics) writeString(out, t);
+
+                out.writeInt(e.matches.size());
+                for (SentenceMatch m : e.matches) {
+                    writeString(out, m.sentence);
+                    out.writeInt(m.topics.size());
+                    for (String t : m.topics) writeString(out, t);
+                }
+
+                out.writeInt(e.links.size());
+                for (CrawlTask.Candidate c : e.links) {
+                    writeString(out, c.url);
+                    out.writeDouble(c.linkScore);
+                }
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            System.err.println("Error caching " + e.url + ": " + ex.getMessage());
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) return null;
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,56 @@
+package crawler;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// One stage of the crawl pipeline (see CrawlManager): jobs wait in a queue of fixed capacity for one of
+// the stage's threads. When the queue is full the submitting thread runs the job itself. That holds the
+// stage before it back until this one catches up, without dropping work or parking a thread on a full queue.
+class Stage implements Executor {
+    private final ThreadPoolExecutor pool;
+    private final LongAdder inline = new LongAdder();
+
+    Stage(String name, int threads, int capacity) {
+        AtomicInteger ids = new AtomicInteger();
+        int n = Math.max(1, threads);
+        this.pool = new ThreadPoolExecutor(n, n, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(1, capacity)),
+                r -> {
+                    Thread t = new Thread(r, name + "-" + ids.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                (job, pool) -> {
+                    if (pool.isShutdown()) return;
+                    this.inline.increment();
+                    job.run();
+                });
+    }
+
+    @Override
+    public void execute(Runnable job) {
+        this.pool.execute(job);
+    }
+
+    // Jobs waiting for a thread
+    int queued() {
+        return this.pool.getQueue().size();
+    }
+
+    // Jobs being run by the stage's threads (not counting the ones run by submitters)
+    int active() {
+        return this.pool.getActiveCount();
+    }
+
+    // Jobs the submitting thread had to run itself because the queue was full
+    long inline() {
+        return this.inline.sum();
+    }
+
+    void shutdown() {
+        this.pool.shutdown();
+    }
+}
@@ -0,0 +1,367 @@
+package crawler;
+
+import model.CrawlConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Which links a crawl follows, compiled once per crawl from the CrawlConfig rules into hash tables and a
+// path trie. Checking a link is one pass over its characters plus a few table probes: no URI parsing,
+// no regex and no allocation. A link is followed when
+// - it is http(s) and has no characters a URI can't hold
+// - its host is the seed's, one of allowedHosts, or in or under one of allowedDomains, and isn't one of
+//   excludedHosts (hosts compare without case and without a leading "www.")
+// - the longest of includedPaths and excludedPaths its path starts with is an included one; with no
+//   included paths, any path that no excluded one matches
+// - the extension of its last path segment isn't one of excludedExtensions
+// Query parameters named in strippedQueryParams are taken out of followed links, which is the only case
+// where apply() builds a new string.
+public class UrlFilter {
+    private static final byte INCLUDE = 1;
+    private static final byte EXCLUDE = 2;
+
+    private final RegionSet hosts;
+    private final RegionSet domains;
+    private final RegionSet excludedHosts;
+    private final PathTrie paths;
+    private final boolean pathsByDefault;     // a path no prefix matches is followed
+    private final RegionSet extensions;
+    private final RegionSet strippedParams;
+    private final String[] strippedPrefixes;
+
+    private UrlFilter(RegionSet hosts, RegionSet domains, RegionSet excludedHosts, PathTrie paths, boolean pathsByDefault,
+                      RegionSet extensions, RegionSet strippedParams, String[] strippedPrefixes) {
+        this.hosts = hosts;
+        this.domains = domains;
+        this.excludedHosts = excludedHosts;
+        this.paths = paths;
+        this.pathsByDefault = pathsByDefault;
+        this.extensions = extensions;
+        this.strippedParams = strippedParams;
+        this.strippedPrefixes = strippedPrefixes;
+    }
+
+    public static UrlFilter compile(CrawlConfig config) {
+        List<String> hosts = new ArrayList<>(config.getAllowedHosts());
+        String seedHost = hostOf(config.getSeedUrl());
+        if (seedHost != null) hosts.add(seedHost);
+
+        TreeMap<String, Byte> prefixes = new TreeMap<>();
+        for (String p : config.getIncludedPaths()) prefixes.put(p, INCLUDE);
+        for (String p : config.getExcludedPaths()) prefixes.put(p, EXCLUDE); // excluding wins a tie
+
+        List<String> params = new ArrayList<>();
+        List<String> paramPrefixes = new ArrayList<>();
+        for (String p : config.getStrippedQueryParams()) {
+            if (p.endsWith("*")) paramPrefixes.add(p.substring(0, p.length() - 1));
+            else params.add(p);
+        }
+
+        return new UrlFilter(new RegionSet(withoutWww(hosts)), new RegionSet(config.getAllowedDomains()),
+                new RegionSet(withoutWww(config.getExcludedHosts())), new PathTrie(prefixes),
+                config.getIncludedPaths().isEmpty(), new RegionSet(config.getExcludedExtensions()), new RegionSet(params),
+                paramPrefixes.toArray(new String[0]));
+    }
+
+    // The host of a URL, or null if it has none; only used to compile the rules
+    private static String hostOf(String url) {
+        if (url == null) return null;
+        int i = url.indexOf("://");
+        if (i < 0) return null;
+        int authorityEnd = authorityEnd(url, i + 3, url.length());
+        int from = hostStart(url, i + 3, authorityEnd);
+        int to = hostEnd(url, from, authorityEnd);
+        return to > from ? url.substring(from, to) : null;
+    }
+
+    private static List<String> withoutWww(Collection<String> hosts) {
+        List<String> out = new ArrayList<>();
+        for (String h : hosts) out.add(h.regionMatches(true, 0, "www.", 0, 4) ? h.substring(4) : h);
+        return out;
+    }
+
+    // Whether the link is followed at all
+    public boolean accepts(String url) {
+        if (url == null) return false;
+        int start = 0;
+        int end = url.length();
+        while (start < end && url.charAt(start) <= ' ') start++;
+        while (end > start && url.charAt(end - 1) <= ' ') end--;
+        return check(url, start, end);
+    }
+
+    // The link as it should be queued, with the stripped query parameters taken out, or null if it isn't
+    // followed; the same string if there was nothing to change
+    public String apply(String url) {
+        if (url == null) return null;
+        int start = 0;
+        int end = url.length();
+        while (start < end && url.charAt(start) <= ' ') start++;
+        while (end > start && url.charAt(end - 1) <= ' ') end--;
+        if (!check(url, start, end)) return null;
+        String trimmed = start == 0 && end == url.length() ? url : url.substring(start, end);
+        if (this.strippedParams.isEmpty() && this.strippedPrefixes.length == 0) return trimmed;
+        return stripParams(trimmed);
+    }
+
+    // One pass over url[start, end): scheme, legal characters and where the host and path are, then
+    // the host, path and extension rules
+    private boolean check(String url, int start, int end) {
+        int i;
+        if (url.regionMatches(true, start, "http://", 0, 7)) i = start + 7;
+        else if (url.regionMatches(true, start, "https://", 0, 8)) i = start + 8;
+        else return false;
+
+        int authorityEnd = -1;
+        int pathEnd = end;
+        boolean fragment = false;
+        for (int j = i; j < end; j++) {
+            char c = url.charAt(j);
+            if (!legal(url, j, end)) return false;
+            if (c == '/' || c == '?' || c == '#') {
+                if (authorityEnd < 0) authorityEnd = j;
+                if (c != '/' && pathEnd == end) pathEnd = j;
+                if (c == '#') {
+                    if (fragment) return false; // a second '#'
+                    fragment = true;
+                }
+            }
+        }
+        if (authorityEnd < 0) authorityEnd = end;
+
+        int hostStart = hostStart(url, i, authorityEnd);
+        int hostEnd = hostEnd(url, hostStart, authorityEnd);
+        if (hostEnd <= hostStart) return false;
+        return hostAllowed(url, hostStart, hostEnd) && pathAllowed(url, authorityEnd, pathEnd)
+                && !excludedExtension(url, authorityEnd, pathEnd);
+    }
+
+    private static int authorityEnd(String url, int from, int to) {
+        for (int j = from; j < to; j++) {
+            char c = url.charAt(j);
+            if (c == '/' || c == '?' || c == '#') return j;
+        }
+        return to;
+    }
+
+    // After any user info
+    private static int hostStart(String url, int from, int authorityEnd) {
+        int at = url.lastIndexOf('@', authorityEnd - 1);
+        return at >= from ? at + 1 : from;
+    }
+
+    // Before any port; -1 for a broken IPv6 literal or a port that isn't a number
+    private static int hostEnd(String url, int hostStart, int authorityEnd) {
+        int end = authorityEnd;
+        if (hostStart < authorityEnd && url.charAt(hostStart) == '[') {
+            int close = url.indexOf(']', hostStart);
+            if (close < 0 || close >= authorityEnd) return -1;
+            end = close + 1;
+            if (end < authorityEnd && url.charAt(end) != ':') return -1;
+        } else {
+            int colon = url.indexOf(':', hostStart);
+            if (colon >= 0 && colon < authorityEnd) end = colon;
+        }
+        for (int i = end + 1; i < authorityEnd; i++) {
+            char c = url.charAt(i);
+            if (c < '0' || c > '9') return -1;
+        }
+        return end;
+    }
+
+    // Spaces, controls, the characters URIs reserve for nothing, and '%' without two hex digits are not
+    private static boolean legal(String url, int j, int end) {
+        char c = url.charAt(j);
+        if (c <= ' ' || c == 0x7f) return false;
+        switch (c) {
+            case '"': case '<': case '>': case '\\': case '^': case '`': case '{': case '|': case '}':
+                return false;
+            case '%':
+                return j + 2 < end && hex(url.charAt(j + 1)) && hex(url.charAt(j + 2));
+            default:
+                return true;
+        }
+    }
+
+    private static boolean hex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private boolean hostAllowed(String url, int from, int to) {
+        int bare = url.regionMatches(true, from, "www.", 0, 4) ? from + 4 : from;
+        if (this.excludedHosts.contains(url, bare, to)) return false;
+        if (this.hosts.contains(url, bare, to)) return true;
+        if (this.domains.isEmpty()) return false;
+        if (this.domains.contains(url, from, to)) return true;
+        for (int i = from; i < to; i++) {
+            if (url.charAt(i) == '.' && this.domains.contains(url, i + 1, to)) return true;
+        }
+        return false;
+    }
+
+    private boolean pathAllowed(String url, int from, int to) {
+        byte decision = from == to ? this.paths.longestMatch("/", 0, 1) : this.paths.longestMatch(url, from, to);
+        return decision == 0 ? this.pathsByDefault : decision == INCLUDE;
+    }
+
+    private boolean excludedExtension(String url, int from, int to) {
+        if (this.extensions.isEmpty()) return false;
+        for (int i = to - 1; i >= from; i--) {
+            char c = url.charAt(i);
+            if (c == '/') return false;
+            if (c == '.') return this.extensions.contains(url, i + 1, to);
+        }
+        return false;
+    }
+
+    // The URL without the stripped parameters; only allocates when there is one to take out
+    private String stripParams(String url) {
+        int queryStart = url.indexOf('?');
+        if (queryStart < 0) return url;
+        int queryEnd = url.indexOf('#', queryStart);
+        if (queryEnd < 0) queryEnd = url.length();
+
+        StringBuilder query = null;
+        int i = queryStart + 1;
+        while (i <= queryEnd) {
+            int end = url.indexOf('&', i);
+            if (end < 0 || end > queryEnd) end = queryEnd;
+            int nameEnd = url.indexOf('=', i);
+            if (nameEnd < 0 || nameEnd > end) nameEnd = end;
+            boolean strip = stripped(url, i, nameEnd);
+            if (strip && query == null) {
+                query = new StringBuilder(queryEnd - queryStart);
+                query.append(url, queryStart + 1, Math.max(queryStart + 1, i - 1)); // kept so far, without the last '&'
+            } else if (!strip && query != null) {
+                if (query.length() > 0) query.append('&');
+                query.append(url, i, end);
+            }
+            i = end + 1;
+        }
+        if (query == null) return url;
+
+        StringBuilder sb = new StringBuilder(url.length());
+        sb.append(url, 0, queryStart);
+        if (query.length() > 0) sb.append('?').append(query);
+        sb.append(url, queryEnd, url.length()); // the fragment, if any
+        return sb.toString();
+    }
+
+    private boolean stripped(String url, int from, int to) {
+        if (from == to) return false;
+        if (this.strippedParams.contains(url, from, to)) return true;
+        for (String prefix : this.strippedPrefixes) {
+            if (to - from >= prefix.length() && url.regionMatches(true, from, prefix, 0, prefix.length())) return true;
+        }
+        return false;
+    }
+
+    // Open-addressing set of strings, looked up by a region of another string without case
+    private static class RegionSet {
+        private final String[] table;
+        private final int mask;
+        private final int size;
+
+        RegionSet(Collection<String> values) {
+            int capacity = 2;
+            while (capacity < values.size() * 2) capacity <<= 1;
+            this.table = new String[capacity];
+            this.mask = capacity - 1;
+            int size = 0;
+            for (String v : values) {
+                String lower = v.toLowerCase(Locale.ROOT);
+                if (contains(lower, 0, lower.length())) continue;
+                int i = hash(lower, 0, lower.length()) & this.mask;
+                while (this.table[i] != null) i = (i + 1) & this.mask;
+                this.table[i] = lower;
+                size++;
+            }
+            this.size = size;
+        }
+
+        boolean isEmpty() {
+            return this.size == 0;
+        }
+
+        boolean contains(String s, int from, int to) {
+            if (this.size == 0) return false;
+            int length = to - from;
+            for (int i = hash(s, from, to) & this.mask; ; i = (i + 1) & this.mask) {
+                String v = this.table[i];
+                if (v == null) return false;
+                if (v.length() == length && v.regionMatches(true, 0, s, from, length)) return true;
+            }
+        }
+
+        private static int hash(String s, int from, int to) {
+            int h = 0;
+            for (int i = from; i < to; i++) h = 31 * h + Character.toLowerCase(s.charAt(i));
+            return h ^ (h >>> 16);
+        }
+    }
+
+    // Path prefixes in a trie flattened into arrays: node n's edges are labels[n] (sorted) leading to
+    // children[n], and marks[n] says whether a prefix ending there includes or excludes
+    private static class PathTrie {
+        private final char[][] labels;
+        private final int[][] children;
+        private final byte[] marks;
+
+        private static class Node {
+            final TreeMap<Character, Node> next = new TreeMap<>();
+            byte mark;
+            int id;
+        }
+
+        PathTrie(TreeMap<String, Byte> prefixes) {
+            Node root = new Node();
+            List<Node> nodes = new ArrayList<>();
+            nodes.add(root);
+            for (Map.Entry<String, Byte> e : prefixes.entrySet()) {
+                Node n = root;
+                for (char c : e.getKey().toCharArray()) {
+                    Node child = n.next.get(c);
+                    if (child == null) {
+                        child = new Node();
+                        child.id = nodes.size();
+                        nodes.add(child);
+                        n.next.put(c, child);
+                    }
+                    n = child;
+                }
+                n.mark = e.getValue();
+            }
+            this.labels = new char[nodes.size()][];
+            this.children = new int[nodes.size()][];
+            this.marks = new byte[nodes.size()];
+            for (Node n : nodes) {
+                this.labels[n.id] = new char[n.next.size()];
+                this.children[n.id] = new int[n.next.size()];
+                int k = 0;
+                for (Map.Entry<Character, Node> e : n.next.entrySet()) {
+                    this.labels[n.id][k] = e.getKey();
+                    this.children[n.id][k++] = e.getValue().id;
+                }
+                this.marks[n.id] = n.mark;
+            }
+        }
+
+        // Mark of the longest prefix of s[from, to) in the trie, 0 if none
+        byte longestMatch(String s, int from, int to) {
+            int node = 0;
+            byte decision = this.marks[0];
+            for (int i = from; i < to; i++) {
+                int k = Arrays.binarySearch(this.labels[node], s.charAt(i));
+                if (k < 0) break;
+                node = this.children[node][k];
+                if (this.marks[node] != 0) decision = this.marks[node];
+            }
+            return decision;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package crawler;
+
+import parser.SimHash;
+
+// 64-bit fingerprint of a URL string: FNV-1a over the chars followed by the murmur3 finalizer for avalanche
+public final class UrlFingerprint {
+    private UrlFingerprint() {
+    }
+
+    public static long of(CharSequence s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return SimHash.mix(h);
+    }
+}
@@ -0,0 +1,259 @@
+package crawler;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// URL normalization for dedupe/logging: lowercase scheme and host, drop default ports, "/" for an
+// empty path, no trailing slash, no fragment.
+//
+// Plain http(s) URLs go through a hand-written single pass that allocates at most the result string.
+// Anything it isn't certain about (percent escapes, dot segments, userinfo, IPv6, non-ASCII, other
+// schemes, ...) goes through the original java.net.URI implementation, so the output is the same either way.
+public final class UrlNormalizer {
+    private static final int CACHE_STRIPES = 16;
+    private static final int CACHE_ENTRIES_PER_STRIPE = 128;
+    private static final LruStripe[] CACHE = new LruStripe[CACHE_STRIPES];
+
+    static {
+        for (int i = 0; i < CACHE_STRIPES; i++) CACHE[i] = new LruStripe();
+    }
+
+    // One independently locked slice of the cache, evicting its least recently used entry
+    private static class LruStripe extends LinkedHashMap<String, String> {
+        LruStripe() {
+            super(CACHE_ENTRIES_PER_STRIPE * 2, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > CACHE_ENTRIES_PER_STRIPE;
+        }
+    }
+
+    private UrlNormalizer() {
+    }
+
+    public static String normalize(String raw) {
+        if (raw == null) return null;
+        String fast = fastNormalize(raw);
+        return fast != null ? fast : uriNormalize(raw);
+    }
+
+    // For URLs normalized over and over, like the parent page of every link found on it
+    public static String normalizeCached(String raw) {
+        if (raw == null) return null;
+        int h = raw.hashCode();
+        LruStripe stripe = CACHE[(h ^ (h >>> 16)) & (CACHE_STRIPES - 1)];
+        synchronized (stripe) {
+            String hit = stripe.get(raw);
+            if (hit != null) return hit;
+        }
+        String norm = normalize(raw);
+        synchronized (stripe) {
+            stripe.put(raw, norm);
+        }
+        return norm;
+    }
+
+    // The original implementation, kept as the reference for everything the fast path declines
+    static String uriNormalize(String raw) {
+        try {
+            URI u = new URI(raw).normalize(); //
+            String scheme = (u.getScheme() == null ? "http" : u.getScheme().toLowerCase());
+            String host = (u.getHost() == null ? "" : u.getHost().toLowerCase());
+
+            // drop default ports so the same page doesn't get treated as two different URLs
+            int port = u.getPort();
+            if ((scheme.equals("http") && port == 80) || (scheme.equals("https") && port == 443)) {
+                port = -1;
+            }
+
+            String path = (u.getPath() == null || u.getPath().isEmpty()) ? "/" : u.getPath();
+            if (path.endsWith("/") && path.length() > 1) path = path.substring(0, path.length() - 1);
+
+            URI cleaned = new URI(scheme, u.getUserInfo(), host, port, path, u.getQuery(), null);
+            return cleaned.toString();
+        } catch (URISyntaxException e) {
+            // fallback: strip fragment only
+            int hash = raw.indexOf('#');
+            return (hash >= 0) ? raw.substring(0, hash) : raw;
+        }
+    }
+
+    // Returns null whenever the input needs the URI-based path
+    static String fastNormalize(String raw) {
+        int len = raw.length();
+        boolean changed = false;
+
+        // scheme: http:// or https:// in any case
+        boolean https;
+        int i;
+        if (startsWithIgnoreCase(raw, "http://")) {
+            https = false;
+            i = 7;
+        } else if (startsWithIgnoreCase(raw, "https://")) {
+            https = true;
+            i = 8;
+        } else {
+            return null;
+        }
+        int schemeLen = i - 3;
+        for (int k = 0; k < schemeLen; k++) {
+            if (raw.charAt(k) != "https".charAt(k)) changed = true;
+        }
+
+        // host: an ASCII hostname or IPv4 address, no userinfo
+        int hostStart = i;
+        while (i < len) {
+            char c = raw.charAt(i);
+            if (c == ':' || c == '/' || c == '?' || c == '#') break;
+            if (c >= 'A' && c <= 'Z') {
+                changed = true;
+            } else if (!(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9') && c != '-' && c != '.') {
+                return null;
+            }
+            i++;
+        }
+        int hostEnd = i;
+        if (!isServerHost(raw, hostStart, hostEnd)) return null;
+
+        // port
+        int port = -1;
+        if (i < len && raw.charAt(i) == ':') {
+            int portStart = ++i;
+            while (i < len && raw.charAt(i) >= '0' && raw.charAt(i) <= '9') i++;
+            if (i == portStart || i - portStart > 5) return null;
+            port = Integer.parseInt(raw, portStart, i, 10);
+            if ((!https && port == 80) || (https && port == 443)) {
+                port = -1;
+                changed = true;
+            } else if (raw.charAt(portStart) == '0') {
+                changed = true; // printed back without the leading zeros
+            }
+        }
+        if (i < len && raw.charAt(i) != '/' && raw.charAt(i) != '?' && raw.charAt(i) != '#') return null;
+
+        // path: legal characters only, no "//", "." or ".." segments for URI.normalize() to rewrite
+        int pathStart = i;
+        while (i < len) {
+            char c = raw.charAt(i);
+            if (c == '?' || c == '#') break;
+            if (!isPathChar(c)) return null;
+            if (c == '/' && i > pathStart && raw.charAt(i - 1) == '/') return null;
+            if (c == '.' && raw.charAt(i - 1) == '/') {
+                int next = i + 1;
+                if (next < len && raw.charAt(next) == '.') next++;
+                if (next == len || raw.charAt(next) == '/' || raw.charAt(next) == '?' || raw.charAt(next) == '#') {
+                    return null;
+                }
+            }
+            i++;
+        }
+        int pathEnd = i;
+        if (pathEnd == pathStart) {
+            changed = true; // becomes "/"
+        } else if (pathEnd - pathStart > 1 && raw.charAt(pathEnd - 1) == '/') {
+            pathEnd--;
+            changed = true;
+        }
+
+        // query, kept as is
+        int queryStart = -1;
+        int queryEnd = -1;
+        if (i < len && raw.charAt(i) == '?') {
+            queryStart = ++i;
+            while (i < len && raw.charAt(i) != '#') {
+                if (!isUric(raw.charAt(i))) return null;
+                i++;
+            }
+            queryEnd = i;
+        }
+
+        // fragment, dropped (but it still has to be valid for URI to have accepted the input)
+        if (i < len) {
+            changed = true;
+            for (i++; i < len; i++) {
+                if (!isUric(raw.charAt(i))) return null;
+            }
+        }
+
+        if (!changed) return raw;
+
+        StringBuilder sb = new StringBuilder(len + 1);
+        sb.append(https ? "https://" : "http://");
+        for (int k = hostStart; k < hostEnd; k++) {
+            char c = raw.charAt(k);
+            sb.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        if (port != -1) sb.append(':').append(port);
+        if (pathEnd == pathStart) sb.append('/');
+        else sb.append(raw, pathStart, pathEnd);
+        if (queryStart >= 0) sb.append('?').append(raw, queryStart, queryEnd);
+        return sb.toString();
+    }
+
+    private static boolean startsWithIgnoreCase(String s, String prefix) {
+        return s.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    // Hosts java.net.URI parses as server-based: a dotted-quad IPv4 address, or hostname labels of
+    // letters, digits and inner dashes whose last label starts with a letter
+    private static boolean isServerHost(String s, int start, int end) {
+        if (start == end || s.charAt(end - 1) == '.') return false;
+        if (isIPv4(s, start, end)) return true;
+
+        int labelStart = start;
+        int lastLabel = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || s.charAt(i) == '.') {
+                if (i == labelStart) return false; // empty label
+                if (s.charAt(labelStart) == '-' || s.charAt(i - 1) == '-') return false;
+                lastLabel = labelStart;
+                labelStart = i + 1;
+            }
+        }
+        char first = s.charAt(lastLabel);
+        boolean alpha = (first >= 'a' && first <= 'z') || (first >= 'A' && first <= 'Z');
+        return lastLabel == start || alpha;
+    }
+
+    private static boolean isIPv4(String s, int start, int end) {
+        int parts = 0;
+        int i = start;
+        while (i < end) {
+            int partStart = i;
+            int value = 0;
+            while (i < end && s.charAt(i) >= '0' && s.charAt(i) <= '9' && i - partStart < 3) {
+                value = value * 10 + (s.charAt(i) - '0');
+                i++;
+            }
+            if (i == partStart || value > 255) return false;
+            parts++;
+            if (i < end) {
+                if (s.charAt(i) != '.' || parts == 4) return false;
+                i++;
+                if (i == end) return false;
+            }
+        }
+        return parts == 4;
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '_' || c == '.' || c == '!' || c == '~' || c == '*' || c == '\'' || c == '(' || c == ')';
+    }
+
+    // pchar plus ";" and "/", as URI parses and re-quotes paths (minus "%", which is left to URI)
+    private static boolean isPathChar(char c) {
+        return isUnreserved(c) || c == '/' || c == ';' || c == ':' || c == '@' || c == '&' || c == '='
+                || c == '+' || c == '$' || c == ',';
+    }
+
+    // Characters URI accepts in a query or fragment (minus "%", which is left to URI)
+    private static boolean isUric(char c) {
+        return isUnreserved(c) || c == ';' || c == '/' || c == '?' || c == ':' || c == '@' || c == '&' || c == '='
+                || c == '+' || c == '$' || c == ',' || c == '[' || c == ']';
+    }
+}
@@ -0,0 +1,11 @@
+package crawler;
+
+// URLs the crawler has already admitted. A false positive means a page is skipped, never fetched twice.
+public interface VisitedSet {
+    // Adds the URL; true if it was not already in the set
+    boolean add(String url);
+
+    boolean contains(String url);
+
+    int size();
+}
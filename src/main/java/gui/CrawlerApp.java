@@ -1,17 +1,20 @@
 package gui;
 
 import javax.swing.*;
-import javax.swing.text.*;
+import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import model.CrawlConfig;
 import model.LinkRecord;
 import model.SentenceMatch;
 import crawler.CrawlManager;
+import crawler.CrawlMetrics;
+import crawler.LatencyHistogram;
+import crawler.MatchIndex;
 
 public class CrawlerApp extends JFrame {
     private final JTextField urlField;
@@ -20,21 +23,28 @@ public class CrawlerApp extends JFrame {
     private final JTextField maxPagesField;
     private final JButton startButton;
     private final JButton showIndexButton;
-    private final JTextPane resultsArea;
+    private final MatchTableModel resultsModel;
+    private final JTable resultsTable;
+    private final JTextArea detailArea;
     private final JLabel statusLabel;
-    private final AtomicInteger resultCount = new AtomicInteger(0);
-    private final StyledDocument documentReference;
     private final JPanel searchPanel;
     private final JTextField searchField;
     private final JButton searchButton;
     private final JButton findNextButton;
-    private final Highlighter highlighter;
-    private final Highlighter.HighlightPainter highlightPainter;
-    private int lastSearchIndex = 0;
-    private String lastSearchTerm = "";
+    private final JButton findPreviousButton;
+    private final JTextField urlFilterField;
+    private final JTextField depthFilterField;
+    private final JCheckBox onlyHitsBox;
+    private final JLabel hitsLabel;
+    // Same ids as the table's rows: both get every batch of matches, in the same order
+    private final MatchIndex matchIndex = new MatchIndex();
+    private MatchIndex.Hits searchHits;
+    private int lastSearchRow = -1;
     private final JPanel centerPanel;
-    private final Style defaultStyle;
     private long crawlStartTime;
+    // Matches arrive here from the crawl's threads and go into the table in batches, on the EDT
+    private final ConcurrentLinkedQueue<SentenceMatch> pendingMatches = new ConcurrentLinkedQueue<>();
+    private final Timer flushTimer;
     private final JScrollPane resultsScroll;
     private final JPanel loadingPanel;
     private CrawlManager lastCrawlManager;
@@ -57,7 +67,7 @@ public class CrawlerApp extends JFrame {
         urlRow.add(urlField, BorderLayout.CENTER);
 
         JPanel topicRow = new JPanel(new BorderLayout(8, 0));
-        JLabel topicLabel = new JLabel("Topic:");
+        JLabel topicLabel = new JLabel("Topics:");
         topicField = new JTextField("example", 28);
         topicRow.add(topicLabel, BorderLayout.WEST);
         topicRow.add(topicField, BorderLayout.CENTER);
@@ -91,52 +101,86 @@ public class CrawlerApp extends JFrame {
         inputPanel.add(Box.createVerticalStrut(6));
         inputPanel.add(paramsRow);
 
-        resultsArea = new JTextPane();
-        resultsArea.setEditable(false);
-        documentReference = resultsArea.getStyledDocument();
-
-        defaultStyle = resultsArea.addStyle("DefaultStyle", null);
-        StyleConstants.setForeground(defaultStyle, Color.BLACK);
+        // A table renders only the rows on screen, at one fixed height, so it stays fast however many
+        // matches there are; the selected match is shown in full below it
+        resultsModel = new MatchTableModel();
+        resultsTable = new JTable(resultsModel);
+        resultsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        resultsTable.setAutoResizeMode(JTable.AUTO_RESIZE_LAST_COLUMN);
+        resultsTable.setFillsViewportHeight(true);
+        resultsTable.getColumnModel().getColumn(1).setCellRenderer(new SentenceCellRenderer(resultsModel));
+        int[] widths = { 50, 500, 250 }; // #, Sentence, Source respectively
+        for (int i = 0; i < widths.length; i++) {
+            resultsTable.getColumnModel().getColumn(i).setPreferredWidth(widths[i]);
+        }
+        resultsTable.getColumnModel().getColumn(0).setMaxWidth(80);
+
+        detailArea = new JTextArea(3, 40);
+        detailArea.setEditable(false);
+        detailArea.setLineWrap(true);
+        detailArea.setWrapStyleWord(true);
+        resultsTable.getSelectionModel().addListSelectionListener(e -> {
+            int row = resultsTable.getSelectedRow();
+            if (row < 0) {
+                detailArea.setText("");
+                return;
+            }
+            SentenceMatch m = resultsModel.getMatch(resultsTable.convertRowIndexToModel(row));
+            detailArea.setText(m.getSentence() + "\nSource: " + m.getSourceUrl());
+            detailArea.setCaretPosition(0);
+        });
 
-        resultsScroll = new JScrollPane(resultsArea);
+        resultsScroll = new JScrollPane(resultsTable);
         resultsScroll.setBorder(BorderFactory.createTitledBorder("Crawl Results"));
 
+        flushTimer = new Timer(100, e -> flushMatches());
+
         // Static centered loading message panel
         loadingPanel = new JPanel(new BorderLayout());
         JLabel loadingLabel = new JLabel("Currently crawling…", SwingConstants.CENTER);
         loadingPanel.add(loadingLabel, BorderLayout.CENTER);
 
-        searchField = new JTextField(20);
+        searchField = new JTextField(16);
+        urlFilterField = new JTextField(16);
+        urlFilterField.setToolTipText("Only matches from URLs starting with this");
+        depthFilterField = new JTextField(4);
+        depthFilterField.setToolTipText("A depth (2) or a range (1-3); empty for any");
         searchButton = new JButton("Find");
+        findPreviousButton = new JButton("Previous");
+        findPreviousButton.setEnabled(false);
         findNextButton = new JButton("Find Next");
         findNextButton.setEnabled(false);
+        onlyHitsBox = new JCheckBox("Only hits");
+        onlyHitsBox.setEnabled(false);
+        hitsLabel = new JLabel();
 
         searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         searchPanel.add(new JLabel("Search:"));
         searchPanel.add(searchField);
+        searchPanel.add(new JLabel("URL:"));
+        searchPanel.add(urlFilterField);
+        searchPanel.add(new JLabel("Depth:"));
+        searchPanel.add(depthFilterField);
         searchPanel.add(searchButton);
+        searchPanel.add(findPreviousButton);
         searchPanel.add(findNextButton);
+        searchPanel.add(onlyHitsBox);
+        searchPanel.add(hitsLabel);
         searchPanel.setVisible(false);
 
-        this.highlighter = resultsArea.getHighlighter();
-        this.highlightPainter = new DefaultHighlighter.DefaultHighlightPainter(Color.YELLOW);
-
-        searchButton.addActionListener(e -> {
-            lastSearchTerm = searchField.getText().trim();
-            if (lastSearchTerm.isEmpty()) return;
-            highlighter.removeAllHighlights();
-            lastSearchIndex = 0;
-            findNextButton.setEnabled(true);
-            findNextMatch();
-        });
-
+        searchButton.addActionListener(e -> runSearch());
+        searchField.addActionListener(e -> runSearch());
         findNextButton.addActionListener(e -> {
-            if (lastSearchTerm.isEmpty()) lastSearchTerm = searchField.getText().trim();
-            findNextMatch();
+            if (searchHits != null) showHit(searchHits.next(lastSearchRow));
         });
+        findPreviousButton.addActionListener(e -> {
+            if (searchHits != null) showHit(searchHits.previous(lastSearchRow));
+        });
+        onlyHitsBox.addActionListener(e -> applyHitFilter());
 
         centerPanel = new JPanel(new BorderLayout());
         centerPanel.add(resultsScroll, BorderLayout.CENTER);
+        centerPanel.add(new JScrollPane(detailArea), BorderLayout.SOUTH);
 
         JPanel top = new JPanel(new BorderLayout());
         top.add(inputPanel, BorderLayout.CENTER);
@@ -148,80 +192,74 @@ public class CrawlerApp extends JFrame {
         add(statusLabel, BorderLayout.SOUTH);
     }
 
-    private void findNextMatch() {
-        String content;
-        try {
-            content = documentReference.getText(0, documentReference.getLength()).toLowerCase();
-        } catch (BadLocationException e) {
-            return;
-        }
-        String searchTerm = lastSearchTerm.toLowerCase();
-
-        int index = content.indexOf(searchTerm, lastSearchIndex);
-        if (index == -1 && lastSearchIndex > 0) index = content.indexOf(searchTerm);
-
-        if (index >= 0) {
+    // Look the search words up in the index (the last one as a prefix) and go to the first hit
+    private void runSearch() {
+        int minDepth = 0;
+        int maxDepth = Integer.MAX_VALUE;
+        String depth = depthFilterField.getText().trim();
+        if (!depth.isEmpty()) {
             try {
-                int end = index + searchTerm.length();
-                highlighter.removeAllHighlights();
-                highlighter.addHighlight(index, end, highlightPainter);
-                resultsArea.setCaretPosition(end);
-                lastSearchIndex = end;
-            } catch (BadLocationException ex) {
-                ex.printStackTrace();
+                int dash = depth.indexOf('-');
+                minDepth = Integer.parseInt((dash < 0 ? depth : depth.substring(0, dash)).trim());
+                maxDepth = dash < 0 ? minDepth : Integer.parseInt(depth.substring(dash + 1).trim());
+            } catch (NumberFormatException ex) {
+                hitsLabel.setText("Depth must be a number or a range like 1-3");
+                return;
             }
         }
+        String text = searchField.getText().trim();
+        searchHits = matchIndex.search(new MatchIndex.Query(text, true, urlFilterField.getText().trim(), minDepth, maxDepth));
+        resultsModel.setSearchTerms(MatchIndex.tokens(text));
+        findNextButton.setEnabled(true);
+        findPreviousButton.setEnabled(true);
+        onlyHitsBox.setEnabled(true);
+        applyHitFilter();
+        lastSearchRow = -1;
+        showHit(searchHits.next(-1));
     }
 
-    private void appendWithHighlight(String sentence, String keyword, String sourceUrl) {
-        Style keywordStyle = resultsArea.getStyle("KeywordStyle");
-        if (keywordStyle == null) {
-            keywordStyle = resultsArea.addStyle("KeywordStyle", null);
-            StyleConstants.setForeground(keywordStyle, new Color(0x1a7f37));
-            StyleConstants.setBold(keywordStyle, true);
+    // With "Only hits" ticked the table shows just the rows the last search found
+    private void applyHitFilter() {
+        if (!onlyHitsBox.isSelected() || searchHits == null) {
+            resultsTable.setRowSorter(null);
+            return;
         }
-
-        int lastIndex = 0;
-        String lowerSentence = sentence.toLowerCase();
-        String lowerKeyword = keyword.toLowerCase();
-
-        while (lastIndex < sentence.length()) {
-            int index = lowerSentence.indexOf(lowerKeyword, lastIndex);
-            if (index == -1) {
-                try {
-                    documentReference.insertString(documentReference.getLength(),
-                            sentence.substring(lastIndex), defaultStyle);
-                } catch (BadLocationException e) {
-                    e.printStackTrace();
-                }
-                break;
+        MatchIndex.Hits hits = searchHits;
+        TableRowSorter<MatchTableModel> sorter = new TableRowSorter<>(resultsModel);
+        sorter.setRowFilter(new RowFilter<MatchTableModel, Integer>() {
+            @Override
+            public boolean include(Entry<? extends MatchTableModel, ? extends Integer> entry) {
+                return hits.contains(entry.getIdentifier());
             }
-            try {
-                documentReference.insertString(documentReference.getLength(),
-                        sentence.substring(lastIndex, index), defaultStyle);
-                documentReference.insertString(documentReference.getLength(),
-                        sentence.substring(index, index + keyword.length()), keywordStyle);
-            } catch (BadLocationException e) {
-                e.printStackTrace();
-            }
-            lastIndex = index + keyword.length();
-        }
+        });
+        resultsTable.setRowSorter(sorter);
+        if (lastSearchRow >= 0) showHit(lastSearchRow);
+    }
 
-        try {
-            documentReference.insertString(documentReference.getLength(),
-                    "\nSource: " + sourceUrl + "\n\n", defaultStyle);
-        } catch (BadLocationException e) {
-            e.printStackTrace();
+    private void showHit(int row) {
+        if (row < 0) {
+            resultsTable.clearSelection();
+            hitsLabel.setText("No matches");
+            return;
         }
+        int viewRow = resultsTable.convertRowIndexToView(row);
+        resultsTable.setRowSelectionInterval(viewRow, viewRow);
+        resultsTable.scrollRectToVisible(resultsTable.getCellRect(viewRow, 0, true));
+        hitsLabel.setText(String.format("%d of %d", searchHits.indexOf(row) + 1, searchHits.size()));
+        lastSearchRow = row;
     }
 
-    private void clearResults() {
-        try {
-            documentReference.remove(0, documentReference.getLength());
-            documentReference.insertString(0, "Starting crawl...\n\n", defaultStyle);
-        } catch (BadLocationException e) {
-            e.printStackTrace();
+    // Move everything the crawl has found since the last flush into the table, as one batch
+    private void flushMatches() {
+        List<SentenceMatch> batch = new ArrayList<>();
+        SentenceMatch m;
+        while ((m = pendingMatches.poll()) != null) batch.add(m);
+        if (batch.isEmpty()) return;
+        for (SentenceMatch match : batch) matchIndex.add(match);
+        if (resultsScroll.getViewport().getView() != resultsTable) {
+            resultsScroll.setViewportView(resultsTable); // first matches are in: replace the loading message
         }
+        resultsModel.addAll(batch);
     }
 
     private void handleStart(ActionEvent e) {
@@ -232,55 +270,68 @@ public class CrawlerApp extends JFrame {
 
         CrawlConfig config = new CrawlConfig(url, topic, depth, maxPages);
 
-        clearResults();
+        pendingMatches.clear();
+        matchIndex.clear();
+        searchHits = null;
+        lastSearchRow = -1;
+        findNextButton.setEnabled(false);
+        findPreviousButton.setEnabled(false);
+        onlyHitsBox.setSelected(false);
+        onlyHitsBox.setEnabled(false);
+        resultsTable.setRowSorter(null);
+        hitsLabel.setText("");
+        resultsModel.clear(config.getTopics());
+        detailArea.setText("");
         startButton.setEnabled(false);
         showIndexButton.setEnabled(false);
-        resultCount.set(0);
         searchPanel.setVisible(false);
         crawlStartTime = System.currentTimeMillis();
 
-        // Show the static loading message inside the results area
+        // Show the static loading message inside the results area until the first matches come in
         resultsScroll.setViewportView(loadingPanel);
         resultsScroll.getViewport().revalidate();
         resultsScroll.getViewport().repaint();
 
-        final List<SentenceMatch> matches = new ArrayList<>();
-
-        Thread background = new Thread(() -> {
-            CrawlManager crawlManager = new CrawlManager(
-                    config,
-                    matches::add,
-                    pagesProcessed -> {}    // no-op
-            );
-            lastCrawlManager = crawlManager;
-
-            crawlManager.startCrawl();
+        CrawlManager crawlManager = new CrawlManager(
+                config,
+                pendingMatches::add,    // called on the crawl's threads; never waits for the EDT
+                pagesProcessed -> {}    // no-op
+        );
+        lastCrawlManager = crawlManager;
+        crawlManager.addLogSink(matchIndex); // page depths, for the depth filter
+
+        // live progress from the crawl's metrics, about once a second until the final message below
+        crawlManager.addMetricsListener(snapshot -> {
+            LatencyHistogram.Summary get = snapshot.latency(CrawlMetrics.FETCH_GET);
+            String text = String.format(
+                    "Fetched %d pages (%.1f/s), %d queued, %d in flight, %d failed, GET p50 %.0f ms p99 %.0f ms",
+                    snapshot.counter(CrawlMetrics.PAGES_FETCHED), snapshot.pagesPerSecond(),
+                    snapshot.gauge(CrawlMetrics.QUEUED), snapshot.gauge(CrawlMetrics.IN_FLIGHT),
+                    snapshot.counter(CrawlMetrics.PAGES_FAILED), get.p50Millis, get.p99Millis);
+            SwingUtilities.invokeLater(() -> {
+                if (!startButton.isEnabled()) statusLabel.setText(text + ", " + resultsModel.getRowCount() + " matches");
+            });
+        });
 
+        flushTimer.start();
+        // the crawl runs on the manager's own pool; this fires as soon as the last page is done
+        crawlManager.startCrawlAsync().whenComplete((ignored, error) -> {
             long elapsedMillis = System.currentTimeMillis() - crawlStartTime;
             double elapsedSeconds = elapsedMillis / 1000.0;
-            int pagesCrawled;
-            List<LinkRecord> log = crawlManager.getCrawlLog();
-            if (log != null) pagesCrawled = log.size();
-            else pagesCrawled = 0;
+            long pagesCrawled = crawlManager.getPagesLogged();
 
-            SwingUtilities.invokeLater(() -> { // to do the crawling in a background thread
-                resultsScroll.setViewportView(resultsArea);
+            SwingUtilities.invokeLater(() -> {
+                flushTimer.stop();
+                flushMatches();
+                resultsScroll.setViewportView(resultsTable);
                 resultsScroll.getViewport().revalidate();
                 resultsScroll.getViewport().repaint();
 
-                for (SentenceMatch m : matches) {
-                    appendWithHighlight(
-                            String.format("[%d] %s", resultCount.incrementAndGet(), m.getSentence()),
-                            config.getTopic(),
-                            m.getSourceUrl()
-                    );
-                }
-
                 startButton.setEnabled(true);
                 showIndexButton.setEnabled(true);
                 statusLabel.setText(String.format(
                         "Crawled %d links in %.2f seconds and found %d matches",
-                        pagesCrawled, elapsedSeconds, resultCount.get()
+                        pagesCrawled, elapsedSeconds, resultsModel.getRowCount()
                 ));
 
                 if (searchPanel.getParent() == null) {
@@ -288,44 +339,33 @@ public class CrawlerApp extends JFrame {
                 }
                 searchPanel.setVisible(true);
 
-                try {
-                    documentReference.insertString(documentReference.getLength(),
-                            "Crawl complete!\n", defaultStyle);
-                } catch (BadLocationException ex) {
-                    ex.printStackTrace();
-                }
-
                 revalidate();
                 repaint();
             });
-        }, "crawler-background");
-
-        background.start();
+        });
     }
 
     private void showIndexDialog() {
         if (lastCrawlManager == null) return;
         List<LinkRecord> log = lastCrawlManager.getCrawlLog();
 
-        String[] cols = {"URL", "Depth", "Parent", "Status", "Size", "Type"};
-        Object[][] data;
-        synchronized (log) {
-            data = new Object[log.size()][cols.length];
-            for (int i = 0; i < log.size(); i++) {
-                LinkRecord r = log.get(i);
-                data[i][0] = r.url;
-                data[i][1] = r.depth;
-                data[i][2] = r.parentUrl == null ? "" : r.parentUrl;
-                data[i][3] = r.status;
-                data[i][4] = r.sizeBytes >= 0 ? r.sizeBytes : "";
-                data[i][5] = r.contentType == null ? "" : r.contentType;
-            }
+        String[] cols = {"URL", "Depth", "Parent", "Status", "Size", "Type", "Duplicate of"};
+        Object[][] data = new Object[log.size()][cols.length];
+        for (int i = 0; i < log.size(); i++) {
+            LinkRecord r = log.get(i);
+            data[i][0] = r.url;
+            data[i][1] = r.depth;
+            data[i][2] = r.parentUrl == null ? "" : r.parentUrl;
+            data[i][3] = r.status;
+            data[i][4] = r.sizeBytes < 0 ? "" : r.truncated ? r.sizeBytes + " (truncated)" : r.sizeBytes;
+            data[i][5] = r.contentType == null ? "" : r.contentType;
+            data[i][6] = r.duplicateOf == null ? "" : r.duplicateOf;
         }
         JTable table = new JTable(data, cols);
         table.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
         table.setFillsViewportHeight(true);
 
-        int[] widths = { 430, 60, 430, 60, 100, 150 }; // URL, Depth, Parent, Status, Size, Type respectively
+        int[] widths = { 430, 60, 430, 60, 100, 150, 430 }; // URL, Depth, Parent, Status, Size, Type, Duplicate of respectively
         for (int i = 0; i < widths.length; i++) {
             table.getColumnModel().getColumn(i).setPreferredWidth(widths[i]);
         }
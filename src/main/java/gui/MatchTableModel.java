@@ -0,0 +1,77 @@
+package gui;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import model.SentenceMatch;
+
+// Matching sentences for the results table. Rows are only appended, in batches, and only on the EDT;
+// the table asks for the visible rows alone, so the number of matches doesn't slow down painting.
+public class MatchTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = {"#", "Sentence", "Source"};
+
+    private final List<SentenceMatch> matches = new ArrayList<>();
+    private List<String> defaultTopics = Collections.emptyList(); // for matches that don't name their topics
+    private List<String> searchTerms = Collections.emptyList();
+
+    public void addAll(List<SentenceMatch> batch) {
+        if (batch.isEmpty()) return;
+        int first = this.matches.size();
+        this.matches.addAll(batch);
+        fireTableRowsInserted(first, this.matches.size() - 1);
+    }
+
+    public void clear(List<String> defaultTopics) {
+        this.matches.clear();
+        this.defaultTopics = defaultTopics;
+        this.searchTerms = Collections.emptyList();
+        fireTableDataChanged();
+    }
+
+    public SentenceMatch getMatch(int row) {
+        return this.matches.get(row);
+    }
+
+    // The topics to highlight in a row
+    public List<String> topicsOf(int row) {
+        List<String> topics = this.matches.get(row).getTopics();
+        return topics.isEmpty() ? this.defaultTopics : topics;
+    }
+
+    public List<String> getSearchTerms() {
+        return this.searchTerms;
+    }
+
+    // Highlighted in every row, as the search moves from hit to hit
+    public void setSearchTerms(List<String> searchTerms) {
+        this.searchTerms = searchTerms;
+        if (!this.matches.isEmpty()) fireTableRowsUpdated(0, this.matches.size() - 1);
+    }
+
+    @Override
+    public int getRowCount() {
+        return this.matches.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        SentenceMatch m = this.matches.get(row);
+        switch (column) {
+            case 0: return row + 1;
+            case 1: return m.getSentence();
+            default: return m.getSourceUrl();
+        }
+    }
+}
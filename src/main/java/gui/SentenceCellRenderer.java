@@ -0,0 +1,67 @@
+package gui;
+
+import javax.swing.JTable;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.Component;
+import java.util.List;
+
+// Renders a sentence with its topics in bold green and the current search words on yellow, as HTML.
+// Only called for the rows on screen.
+public class SentenceCellRenderer extends DefaultTableCellRenderer {
+    private final MatchTableModel model;
+
+    public SentenceCellRenderer(MatchTableModel model) {
+        this.model = model;
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus,
+                                                   int row, int column) {
+        super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+        int modelRow = table.convertRowIndexToModel(row);
+        setText(html((String) value, this.model.topicsOf(modelRow), this.model.getSearchTerms()));
+        return this;
+    }
+
+    static String html(String sentence, List<String> topics, List<String> searchTerms) {
+        String lower = sentence.toLowerCase();
+        boolean[] topic = mark(lower, topics);
+        boolean[] search = mark(lower, searchTerms);
+
+        StringBuilder sb = new StringBuilder(sentence.length() + 64).append("<html>");
+        int i = 0;
+        while (i < sentence.length()) {
+            boolean t = topic[i];
+            boolean s = search[i];
+            if (s) sb.append("<span style=\"background-color: #ffff00\">");
+            if (t) sb.append("<b><font color=\"#1a7f37\">");
+            while (i < sentence.length() && topic[i] == t && search[i] == s) escape(sb, sentence.charAt(i++));
+            if (t) sb.append("</font></b>");
+            if (s) sb.append("</span>");
+        }
+        return sb.append("</html>").toString();
+    }
+
+    // Which characters are part of an occurrence of any of the terms
+    private static boolean[] mark(String lower, List<String> terms) {
+        boolean[] marked = new boolean[lower.length()];
+        for (String term : terms) {
+            String t = term.toLowerCase();
+            if (t.isEmpty()) continue;
+            for (int i = lower.indexOf(t); i >= 0; i = lower.indexOf(t, i + 1)) {
+                for (int j = i; j < i + t.length() && j < marked.length; j++) marked[j] = true;
+            }
+        }
+        return marked;
+    }
+
+    private static void escape(StringBuilder sb, char c) {
+        switch (c) {
+            case '<': sb.append("&lt;"); break;
+            case '>': sb.append("&gt;"); break;
+            case '&': sb.append("&amp;"); break;
+            case '"': sb.append("&quot;"); break;
+            default: sb.append(c);
+        }
+    }
+}
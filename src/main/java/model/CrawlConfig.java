@@ -1,10 +1,47 @@
 package model;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
 public class CrawlConfig {
     private final String seedUrl;
     private final String topic;
     public final int maxDepth;
     public final int maxPages;
+    private List<String> topics;
+    private boolean headRequest = false;
+    private int maxConcurrency = 10;
+    private int maxConcurrencyPerHost = 10;
+    private long hostDelayMillis = 0;
+    private FetchEngine fetchEngine = FetchEngine.BLOCKING;
+    private VisitedSetType visitedSetType = VisitedSetType.EXACT;
+    private double bloomFalsePositiveRate = 0.01;
+    private int maxLinksPerPage = 10;
+    private String stateDirectory = null;
+    private long checkpointIntervalMillis = 5000;
+    private int crawlLogWindow = 10000;
+    private String crawlLogFile = null;
+    private String pageCacheDirectory = null;
+    private int nearDuplicateDistance = 3;
+    private long maxBodyBytes = 2 * 1024 * 1024;
+    private ExtractionMode extractionMode = ExtractionMode.DOM;
+    private long metricsIntervalMillis = 1000;
+    private int parseThreads = 0;
+    private int parseQueueCapacity = 32;
+    private int admissionQueueCapacity = 256;
+    private boolean adaptiveHostLimits = true;
+    private long fetchTimeoutMillis = 5000;
+    private int maxRetries = 2;
+    private List<String> allowedHosts = new ArrayList<>();
+    private List<String> allowedDomains = new ArrayList<>();
+    private List<String> excludedHosts = new ArrayList<>();
+    private List<String> includedPaths = new ArrayList<>();
+    private List<String> excludedPaths = new ArrayList<>();
+    private List<String> excludedExtensions = new ArrayList<>(Arrays.asList(
+            "jpg", "jpeg", "png", "gif", "svg", "ico", "css", "mp3", "mp4", "mov"));
+    private List<String> strippedQueryParams = new ArrayList<>();
 
     public CrawlConfig(String seedUrl, String topic, int maxDepth, int maxPages) {
         this.seedUrl = seedUrl;
@@ -21,6 +58,23 @@ public class CrawlConfig {
         return this.topic;
     }
 
+    // All topics matched in one pass: set explicitly, or the comma-separated terms of the topic string
+    public List<String> getTopics() {
+        if (this.topics != null) return this.topics;
+
+        List<String> split = new ArrayList<>();
+        if (this.topic != null) {
+            for (String t : this.topic.split(",")) {
+                if (!t.trim().isEmpty()) split.add(t.trim());
+            }
+        }
+        return split;
+    }
+
+    public void setTopics(Collection<String> topics) {
+        this.topics = new ArrayList<>(topics);
+    }
+
     public int getMaxDepth() {
         return this.maxDepth;
     }
@@ -29,4 +83,278 @@ public class CrawlConfig {
         return this.maxPages;
     }
 
-}
\ No newline at end of file
+    // Opt-in: issue a separate HEAD request for LinkRecord metadata instead of taking it from the GET
+    public boolean isHeadRequest() {
+        return this.headRequest;
+    }
+
+    public void setHeadRequest(boolean headRequest) {
+        this.headRequest = headRequest;
+    }
+
+    // Upper bound on pages being fetched at once across all hosts
+    public int getMaxConcurrency() {
+        return this.maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    // Upper bound on pages being fetched at once from a single host (also sizes the keep-alive pool).
+    // With adaptive host limits this is the most a host can earn, not where it starts.
+    public int getMaxConcurrencyPerHost() {
+        return this.maxConcurrencyPerHost;
+    }
+
+    public void setMaxConcurrencyPerHost(int maxConcurrencyPerHost) {
+        this.maxConcurrencyPerHost = maxConcurrencyPerHost;
+    }
+
+    // Minimum gap between two requests starting against the same host
+    public long getHostDelayMillis() {
+        return this.hostDelayMillis;
+    }
+
+    public void setHostDelayMillis(long hostDelayMillis) {
+        this.hostDelayMillis = hostDelayMillis;
+    }
+
+    public FetchEngine getFetchEngine() {
+        return this.fetchEngine;
+    }
+
+    public void setFetchEngine(FetchEngine fetchEngine) {
+        this.fetchEngine = fetchEngine;
+    }
+
+    public VisitedSetType getVisitedSetType() {
+        return this.visitedSetType;
+    }
+
+    public void setVisitedSetType(VisitedSetType visitedSetType) {
+        this.visitedSetType = visitedSetType;
+    }
+
+    // Only used by VisitedSetType.BLOOM
+    public double getBloomFalsePositiveRate() {
+        return this.bloomFalsePositiveRate;
+    }
+
+    public void setBloomFalsePositiveRate(double bloomFalsePositiveRate) {
+        this.bloomFalsePositiveRate = bloomFalsePositiveRate;
+    }
+
+    // How many of a page's links (best-scoring first) are queued for crawling
+    public int getMaxLinksPerPage() {
+        return this.maxLinksPerPage;
+    }
+
+    public void setMaxLinksPerPage(int maxLinksPerPage) {
+        this.maxLinksPerPage = maxLinksPerPage;
+    }
+
+    // Directory for the crawl's write-ahead log; a crawl started with the same directory resumes where
+    // the previous one stopped. null keeps the crawl in memory only.
+    public String getStateDirectory() {
+        return this.stateDirectory;
+    }
+
+    public void setStateDirectory(String stateDirectory) {
+        this.stateDirectory = stateDirectory;
+    }
+
+    // How often the state log is forced to disk
+    public long getCheckpointIntervalMillis() {
+        return this.checkpointIntervalMillis;
+    }
+
+    public void setCheckpointIntervalMillis(long checkpointIntervalMillis) {
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+    }
+
+    // How many of the most recent LinkRecords are kept in memory for the index table
+    public int getCrawlLogWindow() {
+        return this.crawlLogWindow;
+    }
+
+    public void setCrawlLogWindow(int crawlLogWindow) {
+        this.crawlLogWindow = crawlLogWindow;
+    }
+
+    // File the complete crawl log is streamed to as NDJSON; null to keep only the in-memory window
+    public String getCrawlLogFile() {
+        return this.crawlLogFile;
+    }
+
+    public void setCrawlLogFile(String crawlLogFile) {
+        this.crawlLogFile = crawlLogFile;
+    }
+
+    // Directory of cached pages for conditional re-crawls (ETag / Last-Modified); null disables the cache
+    public String getPageCacheDirectory() {
+        return this.pageCacheDirectory;
+    }
+
+    public void setPageCacheDirectory(String pageCacheDirectory) {
+        this.pageCacheDirectory = pageCacheDirectory;
+    }
+
+    // Pages whose text SimHash is within this many bits of an earlier page's are skipped as near-duplicates;
+    // 0 only catches identical text, -1 turns detection off
+    public int getNearDuplicateDistance() {
+        return this.nearDuplicateDistance;
+    }
+
+    public void setNearDuplicateDistance(int nearDuplicateDistance) {
+        this.nearDuplicateDistance = nearDuplicateDistance;
+    }
+
+    // Page bodies are only read up to this many bytes (0 for no limit); longer ones are parsed as far as
+    // they were read and logged as truncated
+    public long getMaxBodyBytes() {
+        return this.maxBodyBytes;
+    }
+
+    public void setMaxBodyBytes(long maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    public ExtractionMode getExtractionMode() {
+        return this.extractionMode;
+    }
+
+    public void setExtractionMode(ExtractionMode extractionMode) {
+        this.extractionMode = extractionMode;
+    }
+
+    public long getMetricsIntervalMillis() {
+        return this.metricsIntervalMillis;
+    }
+
+    // How often metrics listeners get a snapshot; 0 for only the final one
+    public void setMetricsIntervalMillis(long metricsIntervalMillis) {
+        this.metricsIntervalMillis = metricsIntervalMillis;
+    }
+
+    // Threads that parse and match fetched pages; 0 for one per core
+    public int getParseThreads() {
+        return this.parseThreads;
+    }
+
+    public void setParseThreads(int parseThreads) {
+        this.parseThreads = parseThreads;
+    }
+
+    // Fetched pages that may wait for a parse thread. Once it is full the fetch thread parses the page
+    // itself, so fetching slows down to the speed of parsing.
+    public int getParseQueueCapacity() {
+        return this.parseQueueCapacity;
+    }
+
+    public void setParseQueueCapacity(int parseQueueCapacity) {
+        this.parseQueueCapacity = parseQueueCapacity;
+    }
+
+    // Parsed pages whose links may wait to be queued; once it is full the parse thread queues them itself
+    public int getAdmissionQueueCapacity() {
+        return this.admissionQueueCapacity;
+    }
+
+    public void setAdmissionQueueCapacity(int admissionQueueCapacity) {
+        this.admissionQueueCapacity = admissionQueueCapacity;
+    }
+
+    // Adjust each host's concurrency and timeout to how it answers (see crawler.HostControl); off keeps
+    // maxConcurrencyPerHost and fetchTimeoutMillis fixed
+    public boolean isAdaptiveHostLimits() {
+        return this.adaptiveHostLimits;
+    }
+
+    public void setAdaptiveHostLimits(boolean adaptiveHostLimits) {
+        this.adaptiveHostLimits = adaptiveHostLimits;
+    }
+
+    // Longest a request may take; adaptive host limits only ever shorten it for hosts that answer quickly
+    public long getFetchTimeoutMillis() {
+        return this.fetchTimeoutMillis;
+    }
+
+    public void setFetchTimeoutMillis(long fetchTimeoutMillis) {
+        this.fetchTimeoutMillis = fetchTimeoutMillis;
+    }
+
+    // How often a page that got a 429/503 or timed out is queued again before it is logged as failed
+    public int getMaxRetries() {
+        return this.maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    // Links are followed to the seed's host and to these hosts as well (a leading "www." doesn't matter)
+    public List<String> getAllowedHosts() {
+        return this.allowedHosts;
+    }
+
+    public void setAllowedHosts(Collection<String> allowedHosts) {
+        this.allowedHosts = new ArrayList<>(allowedHosts);
+    }
+
+    // Links are also followed to any host in or under these domains ("example.com" takes docs.example.com)
+    public List<String> getAllowedDomains() {
+        return this.allowedDomains;
+    }
+
+    public void setAllowedDomains(Collection<String> allowedDomains) {
+        this.allowedDomains = new ArrayList<>(allowedDomains);
+    }
+
+    // Hosts never followed, even the seed's or ones under an allowed domain
+    public List<String> getExcludedHosts() {
+        return this.excludedHosts;
+    }
+
+    public void setExcludedHosts(Collection<String> excludedHosts) {
+        this.excludedHosts = new ArrayList<>(excludedHosts);
+    }
+
+    // Path prefixes to follow, e.g. "/docs/"; empty for every path. Where an included and an excluded
+    // prefix both match, the longer one decides, as in robots.txt.
+    public List<String> getIncludedPaths() {
+        return this.includedPaths;
+    }
+
+    public void setIncludedPaths(Collection<String> includedPaths) {
+        this.includedPaths = new ArrayList<>(includedPaths);
+    }
+
+    // Path prefixes never followed, e.g. "/login"
+    public List<String> getExcludedPaths() {
+        return this.excludedPaths;
+    }
+
+    public void setExcludedPaths(Collection<String> excludedPaths) {
+        this.excludedPaths = new ArrayList<>(excludedPaths);
+    }
+
+    // File extensions (without the dot, any case) of links that aren't followed; images, styles and media by default
+    public List<String> getExcludedExtensions() {
+        return this.excludedExtensions;
+    }
+
+    public void setExcludedExtensions(Collection<String> excludedExtensions) {
+        this.excludedExtensions = new ArrayList<>(excludedExtensions);
+    }
+
+    // Query parameters removed from links before they are queued, so tracking parameters don't make the
+    // same page look new; a trailing * matches by prefix ("utm_*")
+    public List<String> getStrippedQueryParams() {
+        return this.strippedQueryParams;
+    }
+
+    public void setStrippedQueryParams(Collection<String> strippedQueryParams) {
+        this.strippedQueryParams = new ArrayList<>(strippedQueryParams);
+    }
+}
@@ -0,0 +1,7 @@
+package model;
+
+// How text and links are pulled out of a fetched page
+public enum ExtractionMode {
+    DOM,      // Jsoup builds the full Document, then body().text() and a[href]
+    STREAMING // one tokenizer pass over the HTML, no DOM
+}
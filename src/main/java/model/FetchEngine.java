@@ -0,0 +1,7 @@
+package model;
+
+// How pages are downloaded during a crawl
+public enum FetchEngine {
+    BLOCKING, // Jsoup/HttpURLConnection, one pool thread per in-flight page
+    ASYNC     // java.net.http.HttpClient, thousands of in-flight pages on a handful of threads
+}
@@ -7,14 +7,21 @@ public class LinkRecord {
     public final int status;
     public final long sizeBytes;
     public final String contentType;
+    public final String duplicateOf; // page this one is a near-duplicate of (and was skipped for), or null
+    public final boolean truncated;  // body was cut off at CrawlConfig.getMaxBodyBytes()
+    public final int attempts;       // GETs it took; more than 1 when the host throttled or timed out and the page was retried
 
-    public LinkRecord(String url, String parentUrl, int depth, int status, long sizeBytes, String contentType) {
+    public LinkRecord(String url, String parentUrl, int depth, int status, long sizeBytes, String contentType,
+                      String duplicateOf, boolean truncated, int attempts) {
         this.url = url;
         this.parentUrl = parentUrl;
         this.depth = depth;
         this.status = status;
         this.sizeBytes = sizeBytes;
         this.contentType = contentType;
+        this.duplicateOf = duplicateOf;
+        this.truncated = truncated;
+        this.attempts = attempts;
     }
 }
 
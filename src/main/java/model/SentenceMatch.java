@@ -1,12 +1,21 @@
 package model;
 
+import java.util.Collections;
+import java.util.List;
+
 public class SentenceMatch {
     public final String sentence;
     public final String sourceUrl;
+    public final List<String> topics; // which of the crawl's topics this sentence matched
 
     public SentenceMatch(String sentence, String sourceUrl) {
+        this(sentence, sourceUrl, Collections.emptyList());
+    }
+
+    public SentenceMatch(String sentence, String sourceUrl, List<String> topics) {
         this.sentence = sentence;
         this.sourceUrl = sourceUrl;
+        this.topics = topics;
     }
 
     public String getSentence() {
@@ -16,4 +25,8 @@ public class SentenceMatch {
     public String getSourceUrl() {
         return this.sourceUrl;
     }
+
+    public List<String> getTopics() {
+        return this.topics;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,8 @@
+package model;
+
+// How the crawler remembers which URLs it has already admitted
+public enum VisitedSetType {
+    EXACT,       // full URL strings on the heap; no false positives
+    FINGERPRINT, // 64-bit URL fingerprints in an off-heap table; ~16 bytes per URL
+    BLOOM        // Bloom filter; ~1.2 bytes per URL at a 1% false-positive rate
+}
@@ -3,34 +3,91 @@ package parser;
 import model.SentenceMatch;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.regex.Pattern;
 
 public class HTMLParser {
-    private final String query;
+    private final TopicMatcher matcher;
 
     public HTMLParser(String query) {
-        this.query = query;
+        this(Collections.singletonList(query));
+    }
+
+    // built once per crawl and shared by every worker
+    public HTMLParser(Collection<String> topics) {
+        this.matcher = new TopicMatcher(topics);
+    }
+
+    public TopicMatcher getMatcher() {
+        return this.matcher;
     }
 
     public List<SentenceMatch> extractMatchingSentences(String html, String url) {
-        Document doc = Jsoup.parse(html);
-        String text = doc.body().text();
+        return extractMatchingSentences(Jsoup.parse(html), url);
+    }
+
+    // Use the Document the crawler already parsed instead of serializing and re-parsing it
+    public List<SentenceMatch> extractMatchingSentences(Document doc, String url) {
+        return extractMatchingSentencesFromText(pageText(doc), url);
+    }
+
+    // The text sentences are extracted from
+    public static String pageText(Document doc) {
+        Element body = doc.body();
+        return body == null ? doc.text() : body.text();
+    }
 
-        String[] sentences = text.split("(?<=[.!?])\\s+");
+    // Walks the text once, feeding every character to the topic automaton and treating [.!?] followed by
+    // whitespace as a sentence boundary (the same boundaries the old split("(?<=[.!?])\\s+") produced).
+    // The automaton restarts at each sentence, so only matching sentences are ever copied out of the text.
+    public List<SentenceMatch> extractMatchingSentencesFromText(String text, String url) {
         List<SentenceMatch> matches = new ArrayList<>();
+        boolean[] hits = new boolean[this.matcher.size()];
+        int found = 0;
+        int len = text.length();
 
-        for (String sentence : sentences) {
-            String regex = "\\b" + Pattern.quote(this.query.toLowerCase()) + "(s|ing|ed)?\\b";
-            Pattern pattern = Pattern.compile(regex);
+        int start = 0;
+        int state = 0;
+        for (int i = 0; i < len; i++) {
+            char c = text.charAt(i);
+            state = this.matcher.step(state, TopicMatcher.fold(c));
+            if (this.matcher.hasOutput(state)) {
+                // the character after a sentence is always whitespace, so checking \b against the whole text is safe
+                found += this.matcher.collect(state, text, i + 1, start, len, hits);
+            }
 
-            if (pattern.matcher(sentence.toLowerCase()).find()) {
-                matches.add(new SentenceMatch(sentence.trim(), url));
+            if (isTerminator(c) && i + 1 < len && isSpace(text.charAt(i + 1))) {
+                if (found > 0) {
+                    matches.add(match(text, start, i + 1, url, hits, found));
+                    Arrays.fill(hits, false);
+                    found = 0;
+                }
+                start = i + 1;
+                while (start < len && isSpace(text.charAt(start))) start++;
+                i = start - 1;
+                state = 0;
             }
         }
+        if (found > 0) matches.add(match(text, start, len, url, hits, found));
 
         return matches;
     }
-}
\ No newline at end of file
+
+    private SentenceMatch match(String text, int start, int end, String url, boolean[] hits, int found) {
+        return new SentenceMatch(text.substring(start, end).trim(), url, this.matcher.hitList(hits, found));
+    }
+
+    private static boolean isTerminator(char c) {
+        return c == '.' || c == '!' || c == '?';
+    }
+
+    // Same set as the regex \s
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,64 @@
+package parser;
+
+// 64-bit SimHash of a page's text (Charikar): every 3-word shingle is hashed, and each bit of the result
+// is the majority vote of that bit over all shingle hashes. Pages that share most of their text end up
+// a few bits apart, so near-duplicates can be found by Hamming distance.
+public final class SimHash {
+    private static final int SHINGLE = 3;
+    private static final int MIN_SHINGLES = 8; // less text than this is too little to call anything a duplicate
+
+    private SimHash() {
+    }
+
+    // The fingerprint, or 0 when the text is too short to fingerprint
+    public static long of(CharSequence text) {
+        int[] votes = new int[64];
+        long w1 = 0;
+        long w2 = 0;
+        int words = 0;
+        int shingles = 0;
+
+        int len = text.length();
+        int i = 0;
+        while (i < len) {
+            while (i < len && !TopicMatcher.isWord(text.charAt(i))) i++;
+            if (i == len) break;
+            long h = 0xcbf29ce484222325L;
+            while (i < len && TopicMatcher.isWord(text.charAt(i))) {
+                h ^= TopicMatcher.fold(text.charAt(i++));
+                h *= 0x100000001b3L;
+            }
+
+            words++;
+            if (words >= SHINGLE) {
+                long shingle = mix(mix(w2 * 31 + w1) * 31 + h);
+                for (int b = 0; b < 64; b++) votes[b] += ((shingle >>> b) & 1) != 0 ? 1 : -1;
+                shingles++;
+            }
+            w2 = w1;
+            w1 = h;
+        }
+        if (shingles < MIN_SHINGLES) return 0;
+
+        long hash = 0;
+        for (int b = 0; b < 64; b++) {
+            if (votes[b] > 0) hash |= 1L << b;
+        }
+        return hash;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    // The murmur3 64-bit finalizer: every input bit affects every output bit. UrlFingerprint and the
+    // Bloom visited set use it too.
+    public static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
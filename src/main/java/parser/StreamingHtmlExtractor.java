@@ -0,0 +1,521 @@
+package parser;
+
+import org.jsoup.internal.StringUtil;
+import org.jsoup.nodes.Entities;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Gets a page's text and links in one forward pass over the HTML, without building a DOM. The text comes
+// out the way Element.text() would produce it for the body (entities decoded, whitespace collapsed, a space
+// between block elements, no script/style/head content), and every <a href> comes with its anchor text and
+// the text right around it, as LinkScorer uses them.
+//
+// It is a tokenizer, not an HTML5 tree builder: it doesn't repair misnested markup, so on broken pages the
+// text can differ a little from what Jsoup's DOM gives.
+public class StreamingHtmlExtractor {
+    // Jsoup's block tags (plus br), which get a space around their text
+    private static final Set<String> BLOCK_TAGS = new HashSet<>(Arrays.asList(
+            "html", "head", "body", "frameset", "script", "noscript", "style", "meta", "link", "title", "frame",
+            "noframes", "section", "nav", "aside", "hgroup", "header", "footer", "p", "h1", "h2", "h3", "h4", "h5",
+            "h6", "ul", "ol", "pre", "div", "blockquote", "hr", "address", "figure", "figcaption", "form",
+            "fieldset", "ins", "del", "dl", "dt", "dd", "li", "table", "caption", "thead", "tfoot", "tbody",
+            "colgroup", "col", "tr", "th", "td", "video", "audio", "canvas", "details", "menu", "plaintext",
+            "template", "article", "main", "svg", "math", "center", "dir", "applet", "marquee", "listing", "br"));
+    private static final Set<String> VOID_TAGS = new HashSet<>(Arrays.asList(
+            "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "source", "track", "wbr", "frame"));
+    // only mean something inside a <table>; elsewhere the parser drops them
+    private static final Set<String> TABLE_PARTS = new HashSet<>(Arrays.asList(
+            "caption", "col", "colgroup", "tbody", "td", "tfoot", "th", "thead", "tr"));
+    private static final Set<String> SKIPPED_CONTENT = new HashSet<>(Arrays.asList("script", "style"));
+    // tags that don't start the body; a <title> only stays out of the text while we're still in the head
+    private static final Set<String> HEAD_TAGS = new HashSet<>(Arrays.asList(
+            "html", "head", "title", "meta", "link", "base", "basefont", "bgsound", "script", "style", "noscript", "template"));
+    // content is text up to the end tag, markup included
+    private static final Set<String> RAW_TEXT = new HashSet<>(Arrays.asList(
+            "textarea", "xmp", "iframe", "noembed", "noframes"));
+    private static final Pattern META_CHARSET = Pattern.compile(
+            "<meta[^>]+charset\\s*=\\s*[\"']?\\s*([A-Za-z0-9_:.-]+)", Pattern.CASE_INSENSITIVE);
+
+    // A link as found on the page
+    public static class Anchor {
+        public final String url;     // absolute, "" if the href couldn't be resolved
+        public final String text;    // anchor text
+        public final String context; // text nodes right before and after the link
+
+        Anchor(String url, String text, String context) {
+            this.url = url;
+            this.text = text;
+            this.context = context;
+        }
+    }
+
+    // What one pass over a page produced
+    public static class Result {
+        public final String text;
+        public final List<Anchor> anchors;
+
+        Result(String text, List<Anchor> anchors) {
+            this.text = text;
+            this.anchors = anchors;
+        }
+    }
+
+    private StreamingHtmlExtractor() {
+    }
+
+    // Decode with the given charset, or the BOM / <meta charset> / UTF-8 like Jsoup does when it is null
+    public static Result extract(byte[] body, String charset, String baseUrl) {
+        return extract(new String(body, charsetFor(body, charset)), baseUrl);
+    }
+
+    public static Result extract(String html, String baseUrl) {
+        return new Pass(html, baseUrl).run();
+    }
+
+    static Charset charsetFor(byte[] body, String declared) {
+        Charset cs = supported(declared);
+        if (cs != null) return cs;
+        if (body.length >= 3 && (body[0] & 0xff) == 0xEF && (body[1] & 0xff) == 0xBB && (body[2] & 0xff) == 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if (body.length >= 2 && (body[0] & 0xff) == 0xFE && (body[1] & 0xff) == 0xFF) return StandardCharsets.UTF_16BE;
+        if (body.length >= 2 && (body[0] & 0xff) == 0xFF && (body[1] & 0xff) == 0xFE) return StandardCharsets.UTF_16LE;
+
+        String head = new String(body, 0, Math.min(body.length, 5 * 1024), StandardCharsets.ISO_8859_1);
+        Matcher m = META_CHARSET.matcher(head);
+        if (m.find()) {
+            cs = supported(m.group(1));
+            if (cs != null) return cs;
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static Charset supported(String name) {
+        if (name == null) return null;
+        try {
+            return Charset.isSupported(name) ? Charset.forName(name) : null;
+        } catch (IllegalCharsetNameException e) {
+            return null;
+        }
+    }
+
+    // State of one pass
+    private static class Pass {
+        private final String html;
+        private final int len;
+        private String baseUrl;
+        private boolean baseSet = false;
+        private URL base;            // baseUrl parsed once, null if it isn't a valid URL
+        private boolean baseParsed = false;
+
+        private final StringBuilder text = new StringBuilder();
+        private final List<Anchor> anchors = new ArrayList<>();
+        private int preDepth = 0; // whitespace inside <pre> is kept as is
+        private boolean inBody = false;
+        private boolean blockEnded = false; // a block just closed: a space follows if anything but its parent's end does
+        private final Map<String, Integer> openBlocks = new HashMap<>(); // end tags without a start are ignored
+
+        // text between two tags; the runs next to a link are its context
+        private final StringBuilder run = new StringBuilder();
+        private String lastRun = "";      // decoded run that just ended, empty if there was none
+        private String beforeLink = "";   // run in front of the open <a>
+        private String openHref = null;   // href of the <a> we're inside, null if none
+        private StringBuilder anchorText = null;
+        private String closedHref = null; // <a> that just closed and is waiting for the text after it
+        private String closedText = null;
+        private String closedBefore = null;
+        private String afterLink = "";
+
+        Pass(String html, String baseUrl) {
+            this.html = html;
+            this.len = html.length();
+            this.baseUrl = baseUrl == null ? "" : baseUrl;
+        }
+
+        Result run() {
+            int i = 0;
+            while (i < this.len) {
+                int lt = this.html.indexOf('<', i);
+                if (lt < 0) lt = this.len;
+                if (lt > i) textRun(i, lt);
+                if (lt == this.len) break;
+                i = tag(lt);
+            }
+            endRun();
+            if (this.openHref != null) closeLink(); // an <a> never closed
+            finishClosedLink(); // a link right at the end of the page
+
+            return new Result(this.text.toString().trim(), this.anchors);
+        }
+
+        // Returns the index just past the markup starting at '<'
+        private int tag(int lt) {
+            if (lt + 1 >= this.len) {
+                textRun(lt, this.len); // a lone '<' at the end
+                return this.len;
+            }
+            char c = this.html.charAt(lt + 1);
+            if (this.html.startsWith("<!--", lt)) {
+                int end = this.html.indexOf("-->", lt + 4);
+                return end < 0 ? this.len : end + 3;
+            }
+            if (c == '!' || c == '?') {
+                int end = this.html.indexOf('>', lt + 2);
+                return end < 0 ? this.len : end + 1;
+            }
+            boolean closing = c == '/';
+            int nameStart = closing ? lt + 2 : lt + 1;
+            if (nameStart >= this.len || !isAsciiLetter(this.html.charAt(nameStart))) {
+                if (closing) { // "</ " and the like: a bogus comment
+                    int end = this.html.indexOf('>', lt + 2);
+                    return end < 0 ? this.len : end + 1;
+                }
+                textRun(lt, lt + 1); // literal '<'
+                return lt + 1;
+            }
+            int nameEnd = nameStart;
+            while (nameEnd < this.len && !isTagNameEnd(this.html.charAt(nameEnd))) nameEnd++;
+            String name = this.html.substring(nameStart, nameEnd).toLowerCase();
+
+            endRun();
+            if (closing) {
+                int end = this.html.indexOf('>', nameEnd);
+                endTag(name);
+                return end < 0 ? this.len : end + 1;
+            }
+
+            String href = null;
+            int i = nameEnd;
+            // attributes; only href matters
+            while (i < this.len) {
+                char ch = this.html.charAt(i);
+                if (ch == '>') break;
+                if (isSpace(ch) || ch == '/') {
+                    i++;
+                    continue;
+                }
+                int attrStart = i;
+                while (i < this.len && !isSpace(this.html.charAt(i)) && this.html.charAt(i) != '='
+                        && this.html.charAt(i) != '>' && this.html.charAt(i) != '/') i++;
+                boolean isHref = href == null && i - attrStart == 4 && this.html.regionMatches(true, attrStart, "href", 0, 4);
+                while (i < this.len && isSpace(this.html.charAt(i))) i++;
+                int vStart = i;
+                int vEnd = i;
+                if (i < this.len && this.html.charAt(i) == '=') {
+                    i++;
+                    while (i < this.len && isSpace(this.html.charAt(i))) i++;
+                    if (i < this.len && (this.html.charAt(i) == '"' || this.html.charAt(i) == '\'')) {
+                        char q = this.html.charAt(i);
+                        int close = this.html.indexOf(q, i + 1);
+                        if (close < 0) close = this.len;
+                        vStart = i + 1;
+                        vEnd = close;
+                        i = Math.min(this.len, close + 1);
+                    } else {
+                        vStart = i;
+                        while (i < this.len && !isSpace(this.html.charAt(i)) && this.html.charAt(i) != '>') i++;
+                        vEnd = i;
+                    }
+                }
+                if (isHref) href = unescape(this.html.substring(vStart, vEnd), true); // only href's value is kept
+            }
+            int next = Math.min(this.len, i + 1);
+
+            startTag(name, href);
+            if (name.equals("pre") || name.equals("listing") || name.equals("textarea")) {
+                // a newline right after the start tag isn't content
+                if (this.html.startsWith("\r\n", next)) next += 2;
+                else if (next < this.len && (this.html.charAt(next) == '\n' || this.html.charAt(next) == '\r')) next++;
+            }
+            if (SKIPPED_CONTENT.contains(name) || (name.equals("title") && !this.inBody)) return skipContent(name, next);
+            if (name.equals("title")) return rawText(name, next);
+            if (RAW_TEXT.contains(name)) return rawText(name, next);
+            return next;
+        }
+
+        private void startTag(String name, String href) {
+            if (TABLE_PARTS.contains(name) && !inTable()) return;
+            if (!HEAD_TAGS.contains(name)) this.inBody = true;
+            if (this.blockEnded) space();
+            this.blockEnded = false;
+            if (BLOCK_TAGS.contains(name) && !VOID_TAGS.contains(name)) this.openBlocks.merge(name, 1, Integer::sum);
+            if (name.equals("base") && href != null && !this.baseSet) {
+                this.baseUrl = resolve(href.trim());
+                this.baseParsed = false;
+                this.baseSet = true;
+            }
+            if (BLOCK_TAGS.contains(name)) space();
+            if (name.equals("pre")) this.preDepth++;
+
+            boolean a = name.equals("a");
+            if (a && this.openHref != null) closeLink(); // <a> can't nest; a new one closes the old
+            finishClosedLink();
+            if (a && href != null) {
+                this.openHref = href;
+                this.anchorText = new StringBuilder();
+                this.beforeLink = StringUtil.normaliseWhitespace(this.lastRun); // as TextNode.text()
+            }
+        }
+
+        private boolean inTable() {
+            Integer tables = this.openBlocks.get("table");
+            return tables != null && tables > 0;
+        }
+
+        private void endTag(String name) {
+            if (TABLE_PARTS.contains(name) && !inTable()) return;
+            this.blockEnded = false;
+            if (BLOCK_TAGS.contains(name)) {
+                Integer open = this.openBlocks.get(name);
+                if (open != null && open > 0) {
+                    this.openBlocks.put(name, open - 1);
+                    this.blockEnded = true;
+                } else if (name.equals("p") || name.equals("br")) {
+                    space(); // a stray </p> is an empty paragraph, </br> a <br>
+                    this.blockEnded = name.equals("p");
+                }
+            }
+            if (name.equals("pre") && this.preDepth > 0) this.preDepth--;
+            if (name.equals("a")) {
+                if (this.openHref != null) closeLink();
+            } else {
+                finishClosedLink();
+            }
+        }
+
+        private void closeLink() {
+            this.closedHref = this.openHref;
+            this.closedText = StringUtil.normaliseWhitespace(this.anchorText.toString()).trim(); // as Element.text()
+            this.closedBefore = this.beforeLink;
+            this.openHref = null;
+            this.anchorText = null;
+        }
+
+        // The text after a closed link is known once the next tag comes along
+        private void finishClosedLink() {
+            if (this.closedHref == null) return;
+            String after = this.afterLink;
+            this.anchors.add(new Anchor(resolve(this.closedHref.trim()), this.closedText,
+                    this.closedBefore + " " + StringUtil.normaliseWhitespace(after)));
+            this.closedHref = null;
+            this.afterLink = "";
+        }
+
+        // Same result as StringUtil.resolve(baseUrl, relUrl) (and so Element.absUrl), without re-parsing
+        // the base for every link
+        private String resolve(String relUrl) {
+            if (!this.baseParsed) {
+                try {
+                    this.base = new URL(stripControlChars(this.baseUrl));
+                } catch (MalformedURLException e) {
+                    this.base = null;
+                }
+                this.baseParsed = true;
+            }
+            relUrl = stripControlChars(relUrl);
+            try {
+                if (this.base == null) return new URL(relUrl).toExternalForm();
+                if (relUrl.startsWith("?")) relUrl = this.base.getPath() + relUrl;
+                URL url = new URL(this.base, relUrl);
+                String file = url.getFile();
+                if (file.startsWith("/.")) file = EXTRA_DOT_SEGMENTS.matcher(file).replaceFirst("/"); // "/../a" -> "/a"
+                if (url.getRef() != null) file = file + "#" + url.getRef();
+                return new URL(url.getProtocol(), url.getHost(), url.getPort(), file).toExternalForm();
+            } catch (MalformedURLException e) {
+                return VALID_SCHEME.matcher(relUrl).find() ? relUrl : "";
+            }
+        }
+
+        private void textRun(int start, int end) {
+            this.run.append(this.html, start, end);
+        }
+
+        // A tag (or the end of the page) ends the current text run
+        private void endRun() {
+            if (this.run.length() == 0) {
+                this.lastRun = "";
+                return;
+            }
+            String raw = this.run.toString();
+            this.run.setLength(0);
+            String decoded = unescape(raw, false);
+            this.lastRun = decoded;
+            if (this.blockEnded) space();
+            this.blockEnded = false;
+            if (this.closedHref != null) this.afterLink = decoded;
+            if (this.anchorText != null) this.anchorText.append(decoded);
+            if (!this.inBody && !decoded.trim().isEmpty()) this.inBody = true;
+            if (this.preDepth > 0) {
+                this.text.append(decoded);
+            } else {
+                appendNormalized(decoded);
+            }
+        }
+
+        private int skipContent(String name, int from) {
+            int end = findEndTag(name, from);
+            return end < 0 ? this.len : end;
+        }
+
+        private int rawText(String name, int from) {
+            int end = findEndTag(name, from);
+            int stop = end < 0 ? this.len : end;
+            this.run.append(this.html, from, stop);
+            endRun();
+            return stop;
+        }
+
+        // Index of "</name" (case-insensitive) at or after from, or -1
+        private int findEndTag(String name, int from) {
+            int i = from;
+            while (true) {
+                i = this.html.indexOf("</", i);
+                if (i < 0) return -1;
+                if (this.html.regionMatches(true, i + 2, name, 0, name.length())) {
+                    int after = i + 2 + name.length();
+                    if (after >= this.len || isTagNameEnd(this.html.charAt(after))) return i;
+                }
+                i += 2;
+            }
+        }
+
+        private void space() {
+            if (this.text.length() > 0 && this.text.charAt(this.text.length() - 1) != ' ') this.text.append(' ');
+        }
+
+        private void appendNormalized(String s) {
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (isWhitespace(c)) {
+                    space();
+                } else {
+                    this.text.append(c);
+                }
+            }
+        }
+    }
+
+    // Decode character references the way Jsoup's tokenizer does (Parser.unescapeEntities would do the same,
+    // but sets up a whole CharacterReader for every call)
+    static String unescape(String s, boolean inAttribute) {
+        int amp = s.indexOf('&');
+        if (amp < 0) return s;
+        StringBuilder out = new StringBuilder(s.length());
+        out.append(s, 0, amp);
+        int[] codepoints = new int[2];
+        int i = amp;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c != '&') {
+                out.append(c);
+                i++;
+                continue;
+            }
+            int end = reference(s, i + 1, inAttribute, out, codepoints);
+            if (end < 0) {
+                out.append('&');
+                i++;
+            } else {
+                i = end;
+            }
+        }
+        return out.toString();
+    }
+
+    // Appends the reference starting after '&' and returns where it ends, or -1 if it isn't one
+    private static int reference(String s, int start, boolean inAttribute, StringBuilder out, int[] codepoints) {
+        int len = s.length();
+        if (start >= len) return -1;
+        int i = start;
+        if (s.charAt(i) == '#') {
+            i++;
+            boolean hex = i < len && (s.charAt(i) == 'x' || s.charAt(i) == 'X');
+            if (hex) i++;
+            int digitsStart = i;
+            long value = 0;
+            while (i < len) {
+                int d = Character.digit(s.charAt(i), hex ? 16 : 10);
+                if (d < 0 || s.charAt(i) > 'f') break; // ASCII digits only
+                value = Math.min(value * (hex ? 16 : 10) + d, 0x110000);
+                i++;
+            }
+            if (i == digitsStart) return -1;
+            if (i < len && s.charAt(i) == ';') i++;
+
+            int cp = (int) value;
+            if ((cp >= 0xD800 && cp <= 0xDFFF) || cp > 0x10FFFF) {
+                cp = 0xFFFD;
+            } else if (cp >= 0x80 && cp < 0x80 + WIN1252.length) {
+                cp = WIN1252[cp - 0x80];
+            }
+            out.appendCodePoint(cp);
+            return i;
+        }
+
+        while (i < len && isAsciiLetter(s.charAt(i))) i++;
+        while (i < len && s.charAt(i) >= '0' && s.charAt(i) <= '9') i++;
+        String name = s.substring(start, i);
+        boolean semicolon = i < len && s.charAt(i) == ';';
+        if (!Entities.isBaseNamedEntity(name) && !(semicolon && Entities.isNamedEntity(name))) return -1;
+        if (inAttribute && !semicolon && i < len) {
+            char next = s.charAt(i);
+            if (isAsciiLetter(next) || (next >= '0' && next <= '9') || next == '=' || next == '-' || next == '_') return -1;
+        }
+        if (semicolon) i++;
+        int n = Entities.codepointsForName(name, codepoints);
+        for (int k = 0; k < n; k++) out.appendCodePoint(codepoints[k]);
+        return i;
+    }
+
+    private static final Pattern EXTRA_DOT_SEGMENTS = Pattern.compile("^/((\\.{1,2}/)+)");
+    private static final Pattern VALID_SCHEME = Pattern.compile("^[a-zA-Z][a-zA-Z0-9+-.]*:");
+
+    private static String stripControlChars(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) < 0x20) {
+                StringBuilder sb = new StringBuilder(s.length());
+                for (int j = 0; j < s.length(); j++) {
+                    if (s.charAt(j) >= 0x20) sb.append(s.charAt(j));
+                }
+                return sb.toString();
+            }
+        }
+        return s;
+    }
+
+    // What the C1 range means in numeric references, as in windows-1252
+    private static final int[] WIN1252 = {
+            0x20AC, 0x0081, 0x201A, 0x0192, 0x201E, 0x2026, 0x2020, 0x2021, 0x02C6, 0x2030, 0x0160, 0x2039, 0x0152,
+            0x008D, 0x017D, 0x008F, 0x0090, 0x2018, 0x2019, 0x201C, 0x201D, 0x2022, 0x2013, 0x2014, 0x02DC, 0x2122,
+            0x0161, 0x203A, 0x0153, 0x009D, 0x017E, 0x0178};
+
+    // What Jsoup's text() treats as whitespace (StringUtil.isActuallyWhitespace)
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == 160;
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isTagNameEnd(char c) {
+        return isSpace(c) || c == '/' || c == '>';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
@@ -0,0 +1,210 @@
+package parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+// Aho-Corasick automaton over every topic plus its stem variants (topic, topic+s, topic+ing, topic+ed),
+// so any number of topics is matched in one linear pass over the text. Matching is case-insensitive and
+// only accepts whole words, with the same boundary rule as the regex \b.
+public class TopicMatcher {
+    private static final String[] SUFFIXES = {"", "s", "ing", "ed"};
+
+    private final List<String> topics;
+
+    // automaton, one entry per state; state 0 is the root
+    private final char[][] edgeChars;   // sorted outgoing characters
+    private final int[][] edgeTargets;  // target state for each character in edgeChars
+    private final int[] fail;
+    private final int[][] outTopics;    // topics whose variant ends in this state (incl. via fail links)
+    private final int[][] outLengths;   // length of that variant, to find where the match started
+    private final int[] rootAscii = new int[128]; // direct lookup for the busiest state
+
+    public TopicMatcher(Collection<String> topics) {
+        LinkedHashSet<String> unique = new LinkedHashSet<>();
+        for (String t : topics) {
+            if (t != null && !t.trim().isEmpty()) unique.add(t.trim());
+        }
+        this.topics = Collections.unmodifiableList(new ArrayList<>(unique));
+
+        // 1. trie of all variants
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        List<List<int[]>> outputs = new ArrayList<>(); // {topic, length}
+        children.add(new HashMap<>());
+        outputs.add(new ArrayList<>());
+        for (int id = 0; id < this.topics.size(); id++) {
+            for (String suffix : SUFFIXES) {
+                String variant = this.topics.get(id) + suffix;
+                int state = 0;
+                for (int i = 0; i < variant.length(); i++) {
+                    char c = fold(variant.charAt(i));
+                    Integer next = children.get(state).get(c);
+                    if (next == null) {
+                        next = children.size();
+                        children.get(state).put(c, next);
+                        children.add(new HashMap<>());
+                        outputs.add(new ArrayList<>());
+                    }
+                    state = next;
+                }
+                outputs.get(state).add(new int[]{id, variant.length()});
+            }
+        }
+
+        int n = children.size();
+        this.edgeChars = new char[n][];
+        this.edgeTargets = new int[n][];
+        this.fail = new int[n];
+        this.outTopics = new int[n][];
+        this.outLengths = new int[n][];
+        for (int s = 0; s < n; s++) {
+            Character[] keys = children.get(s).keySet().toArray(new Character[0]);
+            Arrays.sort(keys);
+            this.edgeChars[s] = new char[keys.length];
+            this.edgeTargets[s] = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                this.edgeChars[s][i] = keys[i];
+                this.edgeTargets[s][i] = children.get(s).get(keys[i]);
+            }
+        }
+
+        // 2. failure links breadth-first, merging each state's outputs with its fail state's
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int target : this.edgeTargets[0]) {
+            this.fail[target] = 0;
+            queue.add(target);
+        }
+        this.outTopics[0] = new int[0];
+        this.outLengths[0] = new int[0];
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            for (int i = 0; i < this.edgeChars[s].length; i++) {
+                int target = this.edgeTargets[s][i];
+                int f = this.fail[s];
+                while (f != 0 && edge(f, this.edgeChars[s][i]) < 0) f = this.fail[f];
+                int g = edge(f, this.edgeChars[s][i]);
+                this.fail[target] = (g >= 0 && g != target) ? g : 0;
+                queue.add(target);
+            }
+            List<int[]> own = outputs.get(s);
+            int[] inheritedTopics = this.outTopics[this.fail[s]];
+            int[] inheritedLengths = this.outLengths[this.fail[s]];
+            this.outTopics[s] = new int[own.size() + inheritedTopics.length];
+            this.outLengths[s] = new int[own.size() + inheritedTopics.length];
+            for (int i = 0; i < own.size(); i++) {
+                this.outTopics[s][i] = own.get(i)[0];
+                this.outLengths[s][i] = own.get(i)[1];
+            }
+            System.arraycopy(inheritedTopics, 0, this.outTopics[s], own.size(), inheritedTopics.length);
+            System.arraycopy(inheritedLengths, 0, this.outLengths[s], own.size(), inheritedLengths.length);
+        }
+
+        for (char c = 0; c < 128; c++) {
+            int g = edge(0, c);
+            this.rootAscii[c] = Math.max(g, 0);
+        }
+    }
+
+    public List<String> getTopics() {
+        return this.topics;
+    }
+
+    public int size() {
+        return this.topics.size();
+    }
+
+    static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    // Same definition of a word character that \b uses by default
+    static boolean isWord(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    private int edge(int state, char c) {
+        char[] keys = this.edgeChars[state];
+        int i = Arrays.binarySearch(keys, c);
+        return i >= 0 ? this.edgeTargets[state][i] : -1;
+    }
+
+    // Advance the automaton by one (already folded) character
+    int step(int state, char c) {
+        while (true) {
+            if (state == 0) return c < 128 ? this.rootAscii[c] : Math.max(edge(0, c), 0);
+            int next = edge(state, c);
+            if (next >= 0) return next;
+            state = this.fail[state];
+        }
+    }
+
+    // Record in hits[] every topic whose variant ends at text[end - 1], starts at or after regionStart
+    // and sits on word boundaries within [regionStart, regionEnd). Returns how many new topics were hit.
+    int collect(int state, CharSequence text, int end, int regionStart, int regionEnd, boolean[] hits) {
+        int added = 0;
+        int[] ids = this.outTopics[state];
+        int[] lengths = this.outLengths[state];
+        for (int i = 0; i < ids.length; i++) {
+            if (hits[ids[i]]) continue;
+            int start = end - lengths[i];
+            if (start < regionStart) continue;
+            if (isBoundary(text, start, regionStart, regionEnd) && isBoundary(text, end, regionStart, regionEnd)) {
+                hits[ids[i]] = true;
+                added++;
+            }
+        }
+        return added;
+    }
+
+    // \b with opaque region bounds: characters outside the region count as non-word
+    private static boolean isBoundary(CharSequence text, int pos, int regionStart, int regionEnd) {
+        boolean before = pos > regionStart && isWord(text.charAt(pos - 1));
+        boolean after = pos < regionEnd && isWord(text.charAt(pos));
+        return before != after;
+    }
+
+    // Topics occurring anywhere in the text, in the order they were configured
+    public List<String> findTopics(CharSequence text) {
+        boolean[] hits = new boolean[this.topics.size()];
+        int found = 0;
+        int state = 0;
+        int len = text.length();
+        for (int i = 0; i < len && found < hits.length; i++) {
+            state = step(state, fold(text.charAt(i)));
+            if (this.outTopics[state].length > 0) found += collect(state, text, i + 1, 0, len, hits);
+        }
+        return hitList(hits, found);
+    }
+
+    // Whether any topic occurs in the text; stops at the first hit
+    public boolean matches(CharSequence text) {
+        if (this.topics.isEmpty()) return false;
+        boolean[] hits = new boolean[this.topics.size()];
+        int state = 0;
+        int len = text.length();
+        for (int i = 0; i < len; i++) {
+            state = step(state, fold(text.charAt(i)));
+            if (this.outTopics[state].length > 0 && collect(state, text, i + 1, 0, len, hits) > 0) return true;
+        }
+        return false;
+    }
+
+    List<String> hitList(boolean[] hits, int found) {
+        if (found == 0) return Collections.emptyList();
+        List<String> result = new ArrayList<>(found);
+        for (int i = 0; i < hits.length; i++) {
+            if (hits[i]) result.add(this.topics.get(i));
+        }
+        return result;
+    }
+
+    boolean hasOutput(int state) {
+        return this.outTopics[state].length > 0;
+    }
+}